@@ -0,0 +1,55 @@
+package com.kumuluz.ee.serverless.benchmarks;
+
+import com.kumuluz.ee.serverless.common.FunctionConsolidator;
+import com.kumuluz.ee.serverless.common.ProjectParser;
+import com.kumuluz.ee.serverless.common.TemplateRegistry;
+import com.kumuluz.ee.serverless.common.enums.ConsolidationStrategyEnum;
+import com.kumuluz.ee.serverless.common.pojo.FunctionDefinition;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups the endpoints of the synthetic project into functions and renders the `function.json` of every function,
+ * as `azf-generate-config` does.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RenderBenchmark {
+
+    private static final String FUNCTION_TEMPLATE = Paths.get("TEMPLATES", "function.json").toString();
+
+    @Param({"10", "100", "1000", "10000"})
+    private int endpoints;
+
+    @Param({"NONE", "CLASS"})
+    private ConsolidationStrategyEnum consolidation;
+
+    private List<RestEndpoint> restEndpoints;
+
+    @Setup(Level.Trial)
+    public void scanProject() throws IOException {
+        restEndpoints = ProjectParser.getEndpoints(SyntheticProject.create(endpoints, 0).toMavenProject());
+    }
+
+    @Benchmark
+    public void renderFunctions(Blackhole blackhole) throws IOException {
+        for (FunctionDefinition function : FunctionConsolidator.consolidate(restEndpoints, consolidation)) {
+            blackhole.consume(TemplateRegistry.render(FUNCTION_TEMPLATE, function));
+        }
+    }
+
+}
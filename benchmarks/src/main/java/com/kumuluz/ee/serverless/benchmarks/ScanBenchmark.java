@@ -0,0 +1,55 @@
+package com.kumuluz.ee.serverless.benchmarks;
+
+import com.kumuluz.ee.serverless.common.ProjectParser;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans the synthetic project for endpoints, once from scratch and once with an up-to-date endpoint index.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ScanBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int endpoints;
+
+    @Param({"1", "4"})
+    private int scanThreads;
+
+    private SyntheticProject syntheticProject;
+    private MavenProject project;
+
+    @Setup(Level.Trial)
+    public void createProject() throws IOException {
+        syntheticProject = SyntheticProject.create(endpoints, 0);
+        project = syntheticProject.toMavenProject();
+    }
+
+    @Benchmark
+    public List<RestEndpoint> fullScan() throws IOException {
+        Files.deleteIfExists(syntheticProject.getTargetFolder().resolve(ProjectParser.INDEX_FILE));
+        return ProjectParser.getEndpoints(project, scanThreads);
+    }
+
+    @Benchmark
+    public List<RestEndpoint> incrementalScan() throws IOException {
+        // nothing changed since the previous invocation, so only the class files are hashed
+        return ProjectParser.getEndpoints(project, scanThreads);
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.kumuluz.ee.serverless.benchmarks;
+
+import com.kumuluz.ee.serverless.common.CodeStager;
+import com.kumuluz.ee.serverless.common.enums.StagingStrategyEnum;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Stages the classes and the dependency folder of the synthetic project into a configuration folder, once into an
+ * empty folder and once into a folder that is already up to date.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class StageBenchmark {
+
+    @Param({"1000"})
+    private int endpoints;
+
+    @Param({"64", "512"})
+    private int dependencyMegabytes;
+
+    @Param({"COPY", "HARDLINK", "SYMLINK"})
+    private StagingStrategyEnum strategy;
+
+    private Path targetFolder;
+    private List<Path> files;
+    private CodeStager stager;
+
+    @Setup(Level.Trial)
+    public void createProject() throws IOException {
+        SyntheticProject project = SyntheticProject.create(endpoints, dependencyMegabytes);
+        targetFolder = project.getTargetFolder();
+        files = SyntheticProject.listFiles(project.getClassesFolder());
+        files.addAll(SyntheticProject.listFiles(project.getDependencyFolder()));
+        stager = new CodeStager(strategy);
+    }
+
+    @State(Scope.Thread)
+    public static class EmptyConfigFolder {
+
+        Path folder;
+
+        @Setup(Level.Invocation)
+        public void clean(StageBenchmark benchmark) throws IOException {
+            folder = benchmark.targetFolder.resolve("azf-config-stage");
+            delete(folder);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class StagedConfigFolder {
+
+        Path folder;
+
+        @Setup(Level.Trial)
+        public void stage(StageBenchmark benchmark) throws IOException {
+            folder = benchmark.targetFolder.resolve("azf-config-restage");
+            delete(folder);
+            benchmark.stageAll(folder);
+        }
+    }
+
+    @Benchmark
+    public int stage(EmptyConfigFolder configFolder) throws IOException {
+        return stageAll(configFolder.folder);
+    }
+
+    @Benchmark
+    public int restage(StagedConfigFolder configFolder) throws IOException {
+        return stageAll(configFolder.folder);
+    }
+
+    private int stageAll(Path configFolder) throws IOException {
+        int staged = 0;
+        for (Path file : files) {
+            if (stager.stage(file, configFolder.resolve(targetFolder.relativize(file)))) {
+                staged++;
+            }
+        }
+        return staged;
+    }
+
+    private static void delete(Path folder) throws IOException {
+        if (!Files.exists(folder)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(folder)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.kumuluz.ee.serverless.benchmarks;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.project.MavenProject;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates a project with the given number of JAX-RS endpoints, compiled into `target/classes`, and a dependency
+ * folder of the given size in `target/dependency`. Projects are generated once per size and reused by later runs.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class SyntheticProject {
+
+    public static final String GROUP_ID = "com.example.synthetic";
+
+    private static final int ENDPOINTS_PER_CLASS = 10;
+    private static final int DEPENDENCY_SIZE = 1_024 * 1_024;
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "GET"};
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private final Path root;
+
+    private SyntheticProject(Path root) {
+        this.root = root;
+    }
+
+    public static SyntheticProject create(int endpoints, int dependencyMegabytes) throws IOException {
+        Path root = Paths.get(System.getProperty("java.io.tmpdir"), "azf-benchmarks",
+                String.format("endpoints-%d-dependencies-%dmb", endpoints, dependencyMegabytes));
+        SyntheticProject project = new SyntheticProject(root);
+        if (!Files.exists(root.resolve(COMPLETE_MARKER))) {
+            project.generateClasses(endpoints);
+            project.generateDependencies(dependencyMegabytes);
+            Files.createFile(root.resolve(COMPLETE_MARKER));
+        }
+        return project;
+    }
+
+    public Path getTargetFolder() {
+        return root.resolve("target");
+    }
+
+    public Path getClassesFolder() {
+        return getTargetFolder().resolve("classes");
+    }
+
+    public Path getDependencyFolder() {
+        return getTargetFolder().resolve("dependency");
+    }
+
+    public MavenProject toMavenProject() {
+        MavenProject project = new MavenProject();
+        project.setGroupId(GROUP_ID);
+        project.setArtifactId("synthetic");
+        Build build = new Build();
+        build.setDirectory(getTargetFolder().toString());
+        build.setOutputDirectory(getClassesFolder().toString());
+        project.getModel().setBuild(build);
+        return project;
+    }
+
+    private void generateClasses(int endpoints) throws IOException {
+        Path sourceFolder = root.resolve("src").resolve(GROUP_ID.replace('.', '/'));
+        Files.createDirectories(sourceFolder);
+        Files.createDirectories(getClassesFolder());
+
+        List<Path> sources = new ArrayList<>();
+        sources.add(write(sourceFolder.resolve("App.java"), "package " + GROUP_ID + ";\n\n" +
+                "@javax.ws.rs.ApplicationPath(\"api\")\n" +
+                "public class App extends javax.ws.rs.core.Application {\n}\n"));
+
+        for (int classIndex = 0; classIndex * ENDPOINTS_PER_CLASS < endpoints; classIndex++) {
+            StringBuilder source = new StringBuilder();
+            source.append("package ").append(GROUP_ID).append(";\n\n")
+                    .append("@javax.ws.rs.Path(\"resource").append(classIndex).append("\")\n")
+                    .append("public class Resource").append(classIndex).append(" {\n");
+            int methods = Math.min(ENDPOINTS_PER_CLASS, endpoints - classIndex * ENDPOINTS_PER_CLASS);
+            for (int methodIndex = 0; methodIndex < methods; methodIndex++) {
+                String path = methodIndex % 3 == 0 ? "item" + methodIndex + "/{id}" : "item" + methodIndex;
+                source.append("    @javax.ws.rs.").append(METHODS[methodIndex % METHODS.length]).append('\n')
+                        .append("    @javax.ws.rs.Path(\"").append(path).append("\")\n")
+                        .append("    public String method").append(methodIndex).append("() {\n")
+                        .append("        return \"").append(path).append("\";\n")
+                        .append("    }\n");
+            }
+            source.append("}\n");
+            sources.add(write(sourceFolder.resolve("Resource" + classIndex + ".java"), source.toString()));
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IOException("Generating the synthetic project needs a JDK");
+        }
+        List<String> arguments = new ArrayList<>(List.of("-proc:none", "-d", getClassesFolder().toString(),
+                "-classpath", System.getProperty("java.class.path")));
+        arguments.addAll(sources.stream().map(Path::toString).collect(Collectors.toList()));
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IOException("Could not compile the synthetic project in " + root);
+        }
+    }
+
+    private void generateDependencies(int megabytes) throws IOException {
+        // random content, like the already compressed jars of a real dependency folder
+        Files.createDirectories(getDependencyFolder());
+        Random random = new Random(megabytes);
+        byte[] content = new byte[DEPENDENCY_SIZE];
+        for (int i = 0; i < megabytes; i++) {
+            random.nextBytes(content);
+            try (OutputStream out = Files.newOutputStream(getDependencyFolder().resolve("dependency-" + i + ".jar"))) {
+                out.write(content);
+            }
+        }
+    }
+
+    public static List<Path> listFiles(Path folder) throws IOException {
+        try (Stream<Path> walk = Files.walk(folder)) {
+            return walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static Path write(Path file, String content) throws IOException {
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.kumuluz.ee.serverless.benchmarks;
+
+import com.kumuluz.ee.serverless.common.ZipPackager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packages the classes and the dependency folder of the synthetic project into a deployment zip, which is discarded.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ZipBenchmark {
+
+    @Param({"1000"})
+    private int endpoints;
+
+    @Param({"64", "512"})
+    private int dependencyMegabytes;
+
+    @Param({"1", "4"})
+    private int threads;
+
+    @Param({"1", "6"})
+    private int compressionLevel;
+
+    private Path targetFolder;
+
+    @Setup(Level.Trial)
+    public void createProject() throws IOException {
+        targetFolder = SyntheticProject.create(endpoints, dependencyMegabytes).getTargetFolder();
+    }
+
+    @Benchmark
+    public void zip() throws IOException {
+        new ZipPackager(threads, compressionLevel).zip(targetFolder,
+                file -> file.startsWith(targetFolder.resolve("classes")) || file.startsWith(targetFolder.resolve("dependency")),
+                OutputStream.nullOutputStream());
+    }
+
+}
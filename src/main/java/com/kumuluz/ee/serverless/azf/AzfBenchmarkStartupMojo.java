@@ -0,0 +1,238 @@
+package com.kumuluz.ee.serverless.azf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kumuluz.ee.serverless.common.Commons;
+import com.kumuluz.ee.serverless.common.ProjectParser;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the cold start of the custom handler: for every endpoint, the handler is started from the configuration
+ * folder the way the Functions host starts it, and the time until the endpoint first answers successfully is
+ * measured. The results are written to a JSON report, which can also be compared against a baseline report.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+@Mojo(name = "azf-benchmark-startup")
+public class AzfBenchmarkStartupMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    protected MavenProject project;
+
+    @Parameter(defaultValue = "${project.build.directory}")
+    private String targetFolder;
+
+    @Parameter(property = "configFolder", required = false, defaultValue = "azf-config")
+    private String configFolder;
+
+    @Parameter(property = "benchmarkIterations", required = false, defaultValue = "5")
+    private int benchmarkIterations; // cold starts per endpoint
+
+    @Parameter(property = "benchmarkTimeout", required = false, defaultValue = "60")
+    private int benchmarkTimeout; // seconds to wait for the first successful response of a cold start
+
+    @Parameter(property = "benchmarkBaseline", required = false)
+    private File benchmarkBaseline; // report of a previous run to compare against
+
+    @Parameter(property = "benchmarkMaxRegression", required = false, defaultValue = "10")
+    private double benchmarkMaxRegression; // percent the median startup time may grow over the baseline
+
+    private static final String REPORT_FILE = "azf-startup-benchmark.json";
+    private static final String LOG_FILE = "azf-startup-benchmark.log";
+    private static final long POLL_INTERVAL_MILLIS = 5;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private static class Sample {
+        long startupMillis;
+        long rssKb;
+        long loadedClasses;
+    }
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        try {
+            HandlerLauncher launcher = new HandlerLauncher(Paths.get(targetFolder, configFolder));
+            File log = Paths.get(targetFolder, LOG_FILE).toFile();
+            Files.deleteIfExists(log.toPath());
+            getLog().info("Benchmarking the startup of: " + String.join(" ", launcher.getCommand()));
+            getLog().info("The output of the handler is written to " + log);
+
+            ObjectNode report = mapper.createObjectNode();
+            report.put("iterations", benchmarkIterations);
+            report.set("command", mapper.valueToTree(launcher.getCommand()));
+            ObjectNode endpointsNode = report.putObject("endpoints");
+
+            for (RestEndpoint endpoint : getBenchmarkedEndpoints()) {
+                String key = endpoint.getRestMethodEnum().name() + " /" + endpoint.getCompleteURL();
+                List<Sample> samples = new ArrayList<>();
+                int failures = 0;
+                for (int i = 0; i < benchmarkIterations; i++) {
+                    Sample sample = measure(launcher, endpoint, log);
+                    if (sample != null) {
+                        samples.add(sample);
+                    } else {
+                        failures++;
+                    }
+                }
+                if (failures > 0) {
+                    getLog().warn(String.format("%s did not answer successfully within %d seconds in %d of %d runs",
+                            key, benchmarkTimeout, failures, benchmarkIterations));
+                }
+                ObjectNode endpointNode = endpointsNode.putObject(key);
+                endpointNode.put("failures", failures);
+                if (!samples.isEmpty()) {
+                    endpointNode.set("startupMillis", getStatistics(samples, sample -> sample.startupMillis));
+                    endpointNode.set("rssKb", getStatistics(samples, sample -> sample.rssKb));
+                    endpointNode.set("loadedClasses", getStatistics(samples, sample -> sample.loadedClasses));
+                    getLog().info(String.format("\t\t%s: p50 %d ms, p90 %d ms, max %d ms, rss %d kB, %d classes", key,
+                            endpointNode.path("startupMillis").path("p50").asLong(),
+                            endpointNode.path("startupMillis").path("p90").asLong(),
+                            endpointNode.path("startupMillis").path("max").asLong(),
+                            endpointNode.path("rssKb").path("p50").asLong(),
+                            endpointNode.path("loadedClasses").path("p50").asLong()));
+                }
+            }
+
+            Path reportFile = Paths.get(targetFolder, REPORT_FILE);
+            mapper.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+            getLog().info("Startup benchmark report written to " + reportFile);
+
+            if (benchmarkBaseline != null) {
+                compareWithBaseline(report);
+            }
+
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to benchmark the startup", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while benchmarking the startup", e);
+        }
+    }
+
+    private List<RestEndpoint> getBenchmarkedEndpoints() throws IOException {
+        // only the endpoints that can be called without side effects and without path parameters
+        List<RestEndpoint> endpoints;
+        try {
+            endpoints = ProjectParser.getEndpoints(project).stream()
+                    .filter(RestEndpoint::isSafeToCall)
+                    .collect(Collectors.toList());
+        } catch (IllegalStateException e) {
+            getLog().warn("Could not find the endpoints of the project: " + e.getMessage());
+            endpoints = new ArrayList<>();
+        }
+        if (endpoints.isEmpty()) {
+            throw new IOException("No GET or HEAD endpoint without path parameters to benchmark");
+        }
+        return endpoints;
+    }
+
+    private Sample measure(HandlerLauncher launcher, RestEndpoint endpoint, File log)
+            throws IOException, InterruptedException {
+        // returns null if the endpoint did not answer successfully in time
+        int port = HandlerLauncher.getFreePort();
+        long start = System.nanoTime();
+        Process process = launcher.start(port, log);
+        try {
+            long deadline = start + TimeUnit.SECONDS.toNanos(benchmarkTimeout);
+            while (System.nanoTime() < deadline && process.isAlive()) {
+                int status = call(port, endpoint);
+                if (status / 100 == 2) {
+                    Sample sample = new Sample();
+                    sample.startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    sample.rssKb = HandlerLauncher.getRssKb(process);
+                    sample.loadedClasses = launcher.getLoadedClasses(process);
+                    return sample;
+                }
+                TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL_MILLIS);
+            }
+            if (!process.isAlive()) {
+                getLog().warn("The handler exited with code " + process.exitValue() + ", see " + log);
+            }
+            return null;
+        } finally {
+            HandlerLauncher.stop(process);
+        }
+    }
+
+    private int call(int port, RestEndpoint endpoint) {
+        // returns the status code, or -1 if the handler is not listening yet
+        try {
+            HttpURLConnection http = (HttpURLConnection) new URL(String.format("http://localhost:%d/%s", port,
+                    endpoint.getCompleteURL())).openConnection();
+            http.setRequestMethod(endpoint.getRestMethodEnum().name());
+            http.setConnectTimeout(1_000);
+            http.setReadTimeout(benchmarkTimeout * 1_000);
+            int status = http.getResponseCode();
+            http.disconnect();
+            return status;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private ObjectNode getStatistics(List<Sample> samples, ToLongFunction<Sample> value) {
+        List<Long> values = samples.stream().map(value::applyAsLong).sorted().collect(Collectors.toList());
+        ObjectNode statistics = mapper.createObjectNode();
+        statistics.put("min", values.get(0));
+        statistics.put("p50", Commons.percentile(values, 50));
+        statistics.put("p90", Commons.percentile(values, 90));
+        statistics.put("p99", Commons.percentile(values, 99));
+        statistics.put("max", values.get(values.size() - 1));
+        statistics.put("mean", values.stream().mapToLong(Long::longValue).average().orElse(0));
+        ArrayNode valuesNode = statistics.putArray("values");
+        samples.forEach(sample -> valuesNode.add(value.applyAsLong(sample)));
+        return statistics;
+    }
+
+    private void compareWithBaseline(JsonNode report) throws IOException, MojoFailureException {
+        // compares the median startup time of every endpoint present in both reports
+        JsonNode baseline = mapper.readTree(benchmarkBaseline);
+        List<String> regressions = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> endpoints = report.path("endpoints").fields();
+        while (endpoints.hasNext()) {
+            Map.Entry<String, JsonNode> endpoint = endpoints.next();
+            JsonNode baselineMedian = baseline.path("endpoints").path(endpoint.getKey()).path("startupMillis").path("p50");
+            JsonNode currentMedian = endpoint.getValue().path("startupMillis").path("p50");
+            if (!baselineMedian.isNumber() || !currentMedian.isNumber()) {
+                continue;
+            }
+            double change = baselineMedian.asLong() > 0
+                    ? (currentMedian.asLong() - baselineMedian.asLong()) * 100.0 / baselineMedian.asLong() : 0;
+            String comparison = String.format("%s: %d ms -> %d ms (%+.1f%%)", endpoint.getKey(),
+                    baselineMedian.asLong(), currentMedian.asLong(), change);
+            getLog().info("\t\t" + comparison);
+            if (change > benchmarkMaxRegression) {
+                regressions.add(comparison);
+            }
+        }
+        if (!regressions.isEmpty()) {
+            throw new MojoFailureException(String.format("Startup regressed by more than %.1f%% against %s: %s",
+                    benchmarkMaxRegression, benchmarkBaseline, String.join(", ", regressions)));
+        }
+        getLog().info("No startup regression against " + benchmarkBaseline);
+    }
+
+}
@@ -1,31 +1,36 @@
 package com.kumuluz.ee.serverless.azf;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.kumuluz.ee.serverless.common.BuildMetrics;
 import com.kumuluz.ee.serverless.common.Commons;
+import com.kumuluz.ee.serverless.common.DeploymentManifest;
+import com.kumuluz.ee.serverless.common.PayloadShrinker;
+import com.kumuluz.ee.serverless.common.ProjectParser;
+import com.kumuluz.ee.serverless.common.ZipPackager;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
-import com.kumuluz.ee.serverless.azf.error_handling.ExceptionHandling;
 
 import java.io.*;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Base64;
-import java.util.Properties;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Stream;
-import java.util.zip.ZipOutputStream;
+import java.time.Duration;
+import java.util.*;
+import java.util.zip.Deflater;
 
 /**
  * @author Boris Radovic
  * @since 1.0.0
  */
 
-@Mojo(name = "azf-deploy")
+@Mojo(name = "azf-deploy", threadSafe = true)
 public class AzfDeployMojo extends AbstractMojo {
 
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
@@ -34,6 +39,9 @@ public class AzfDeployMojo extends AbstractMojo {
     @Parameter(property = "removeZipFile", defaultValue = "true")
     private boolean removeZipFile;
 
+    @Parameter(defaultValue = "${session.executionRootDirectory}", readonly = true)
+    private String executionRootDirectory;
+
     private static final String RESOURCE_GROUP_ENV_VAR = "RESOURCE_GROUP";
     private static final String FUNCTION_APP_ENV_VAR = "FUNCTION_APP";
     private static final String AZR_USER_ENV_VAR = "AZF_USER";
@@ -43,6 +51,25 @@ public class AzfDeployMojo extends AbstractMojo {
     private static final String REMOVE_ZIP_ENV_VAR = "REMOVE_ZIP";
     private static final String INITIAL_INVOKE_ENV_VAR = "INITIAL_INVOKE";
     private static final String DEPLOY_WITH_REST_ENV_VAR = "DEPLOY_WITH_REST";
+    private static final String STREAM_DEPLOY_ENV_VAR = "STREAM_DEPLOY";
+    private static final String SCM_URL_ENV_VAR = "SCM_URL";
+    private static final String ZIP_THREADS_ENV_VAR = "ZIP_THREADS";
+    private static final String ZIP_COMPRESSION_LEVEL_ENV_VAR = "ZIP_COMPRESSION_LEVEL";
+    private static final String DELTA_DEPLOY_ENV_VAR = "DELTA_DEPLOY";
+    private static final String APP_URL_ENV_VAR = "APP_URL";
+    private static final String WARMUP_PARALLELISM_ENV_VAR = "WARMUP_PARALLELISM";
+    private static final String WARMUP_TIMEOUT_ENV_VAR = "WARMUP_TIMEOUT";
+    private static final String ASYNC_DEPLOY_ENV_VAR = "ASYNC_DEPLOY";
+    private static final String DEPLOY_STATUS_TIMEOUT_ENV_VAR = "DEPLOY_STATUS_TIMEOUT";
+    private static final String HTTP_CONNECT_TIMEOUT_ENV_VAR = "HTTP_CONNECT_TIMEOUT";
+    private static final String HTTP_REQUEST_TIMEOUT_ENV_VAR = "HTTP_REQUEST_TIMEOUT";
+    private static final String HTTP_RETRIES_ENV_VAR = "HTTP_RETRIES";
+    private static final String PAYLOAD_INCLUDES_ENV_VAR = "PAYLOAD_INCLUDES";
+    private static final String PAYLOAD_EXCLUDES_ENV_VAR = "PAYLOAD_EXCLUDES";
+    private static final String PAYLOAD_DEDUPE_JARS_ENV_VAR = "PAYLOAD_DEDUPE_JARS";
+    private static final String PAYLOAD_STRIP_JARS_ENV_VAR = "PAYLOAD_STRIP_JARS";
+    private static final String WRITE_METRICS_ENV_VAR = "WRITE_METRICS";
+    private static final String RUN_FROM_PACKAGE_ENV_VAR = "RUN_FROM_PACKAGE";
 
     private String resourceGroupName;
     private String functionAppName;
@@ -52,39 +79,132 @@ public class AzfDeployMojo extends AbstractMojo {
     private String configFolder = "azf-config";
     private boolean initialInvoke = true;
     private boolean deployWithRest = true;
+    private boolean streamDeploy = false; // zip directly into the upload body, without writing the zip to disk
+    private String scmUrl; // if not set, use the Kudu site of the function app
+    private int zipThreads = Runtime.getRuntime().availableProcessors();
+    private int zipCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean deltaDeploy = false; // upload only the files that changed since the previous deployment
+    private String appUrl; // if not set, use the site of the function app
+    private int warmupParallelism = 4; // concurrent requests when warming up the endpoints
+    private int warmupTimeout = 300; // seconds to wait for the function app to answer after the deployment
+    private boolean asyncDeploy = true; // let Kudu extract the zip in the background and poll the deployment status
+    private int deployStatusTimeout = 600; // seconds to wait for an asynchronous deployment, 0 to not wait at all
+    private int httpConnectTimeout = 30; // seconds
+    private int httpRequestTimeout = 600; // seconds to wait for the response of a single request
+    private int httpRetries = 3; // retries of requests that failed with a transient error
+    private String payloadIncludes = ""; // comma separated patterns of files to deploy even if they are excluded
+    private String payloadExcludes = "local.settings.json,tmp/EeClassLoader/**"; // comma separated patterns of files not to deploy
+    private boolean payloadDedupeJars = true; // deploy jars with the same content only once
+    private boolean payloadStripJars = false; // strip sources and Maven metadata from the jars
+    private boolean writeMetrics = true; // phase timings and counters in target/azf-metrics-*.json and target/azf-trace-*.json
+    private boolean runFromPackage; // if not set, taken from the generated local.settings.json
+
+    private SortedMap<String, Path> payload; // entry name -> file it is read from
+    private Map<Path, String> payloadHashes; // file -> content hash, of the files the payload rules hashed
+
+    private KuduClient kudu;
+    private final BuildMetrics metrics = new BuildMetrics("azf-deploy");
 
     private static final String SERVERLESS_CONFIG_FILE = ".azf";
+    private static final String DEPLOYMENT_MANIFEST_FILE = ".azf-deploy.manifest";
+    private static final String HOST_FILE = "host.json";
+    private static final String STRIPPED_JARS_FOLDER = "azf-payload";
+    private static final String RUN_FROM_PACKAGE_SETTING = "WEBSITE_RUN_FROM_PACKAGE";
+    private static final String APP_SETTINGS_FILE = "azf-app-settings.json";
 
     public void execute() throws MojoExecutionException {
 
         try {
 
-            loadConfig();
+            try (BuildMetrics.Phase phase = metrics.start("configure")) {
+                loadConfig();
+            }
             if(!checkConfig()) {
                 throw new MojoExecutionException("Failed to deploy - invalid configuration");
             }
 
-            zipConfigAndCode();
+            kudu = new KuduClient(scmUrl != null ? scmUrl : String.format("https://%s.scm.azurewebsites.net", functionAppName),
+                    azfUser, azfUserPassword, Duration.ofSeconds(httpConnectTimeout), Duration.ofSeconds(httpRequestTimeout),
+                    httpRetries, getLog());
+
+            try (BuildMetrics.Phase phase = metrics.start("payload")) {
+                shrinkPayload(phase);
+            }
+
+            if (runFromPackage) {
+                try (BuildMetrics.Phase phase = metrics.start("checkSettings")) {
+                    prepareRunFromPackage();
+                }
+            }
 
-            // push to azure functions
-            deploy();
+            // with delta deployments, the package carries the hashes of its files, so that the next deployment can
+            // upload only the delta; the files are only hashed then
+            Map<String, String> deploymentManifest = null;
+            if (deltaDeploy) {
+                try (BuildMetrics.Phase phase = metrics.start("manifest")) {
+                    deploymentManifest = writeDeploymentManifest();
+                    phase.add("hashedFiles", deploymentManifest.size());
+                }
+            }
 
-            if (removeZipFile) {
-                String zipFilePath = Paths.get(project.getBuild().getDirectory(), configFolder, zipFileName).toString();
-                getLog().info("Deleting " + zipFilePath);
-                Files.delete(Paths.get(zipFilePath));
+            if (deltaDeploy && deployDelta(deploymentManifest)) {
+                getLog().info("Delta deployment completed.");
+            } else if (streamDeploy) {
+                // zip and push to azure functions at the same time
+                deployStreaming();
+            } else {
+                try (BuildMetrics.Phase phase = metrics.start("zip")) {
+                    zipConfigAndCode();
+                    Path zipFile = Paths.get(project.getBuild().getDirectory(), configFolder, zipFileName);
+                    phase.add("zipBytes", Files.size(zipFile));
+                    if (runFromPackage) {
+                        getLog().info("Package hash: " + Commons.hash(zipFile));
+                    }
+                }
+
+                // push to azure functions
+                deploy();
+
+                if (removeZipFile) {
+                    String zipFilePath = Paths.get(project.getBuild().getDirectory(), configFolder, zipFileName).toString();
+                    getLog().info("Deleting " + zipFilePath);
+                    Files.delete(Paths.get(zipFilePath));
+                }
             }
 
             if (initialInvoke) {
-                testCallAzf();
+                try (BuildMetrics.Phase phase = metrics.start("warmUp")) {
+                    warmUp(phase);
+                }
             }
 
         } catch (IOException | InterruptedException e) {
             throw new MojoExecutionException("Failed to deploy", e);
+        } finally {
+            if (kudu != null) {
+                kudu.close();
+            }
+            writeMetrics();
         }
 
     }
 
+    private void writeMetrics() {
+        // also written when the deployment failed, to show where it did
+        if (!writeMetrics) {
+            return;
+        }
+        if (kudu != null) {
+            metrics.add("uploadedBytes", kudu.getUploadedBytes());
+        }
+        try {
+            Path metricsFile = metrics.write(Paths.get(project.getBuild().getDirectory()));
+            getLog().info("Phase timings: " + metrics.getSummary() + ", written to " + metricsFile);
+        } catch (IOException e) {
+            getLog().warn("Could not write the metrics: " + e.getMessage());
+        }
+    }
+
     private boolean checkConfig() {
         boolean isValidConfiguration = true;
         if (functionAppName == null) {
@@ -101,15 +221,26 @@ public class AzfDeployMojo extends AbstractMojo {
                     RESOURCE_GROUP_ENV_VAR + ".");
             isValidConfiguration = false;
         }
+
+        if (runFromPackage && Commons.getIsJarPackaging(project)) {
+            getLog().error("Running from the package is not possible with the jar packaging, since the KumuluzEE " +
+                    "class loader extracts the dependencies into tmp/EeClassLoader of the function app, which is " +
+                    "read-only when mounted. Use the `copy-dependencies` packaging or set " + RUN_FROM_PACKAGE_ENV_VAR +
+                    " to false.");
+            isValidConfiguration = false;
+        }
         return isValidConfiguration;
     }
 
     private void loadConfig() throws IOException {
         Properties prop = new Properties();
 
-        if (new File(SERVERLESS_CONFIG_FILE).exists()) {
-            getLog().info("Found configuration file. Loading it...");
-            prop.load(new FileInputStream(SERVERLESS_CONFIG_FILE));
+        Path configFile = getConfigFile();
+        if (configFile != null) {
+            getLog().info("Found configuration file " + configFile + ". Loading it...");
+            try (InputStream in = Files.newInputStream(configFile)) {
+                prop.load(in);
+            }
         }
 
         resourceGroupName = getEnvString(RESOURCE_GROUP_ENV_VAR, prop, resourceGroupName);
@@ -121,6 +252,46 @@ public class AzfDeployMojo extends AbstractMojo {
         initialInvoke = getEnvBool(INITIAL_INVOKE_ENV_VAR, prop, initialInvoke);
         removeZipFile = getEnvBool(REMOVE_ZIP_ENV_VAR, prop, removeZipFile);
         deployWithRest = getEnvBool(DEPLOY_WITH_REST_ENV_VAR, prop, deployWithRest);
+        streamDeploy = getEnvBool(STREAM_DEPLOY_ENV_VAR, prop, streamDeploy);
+        scmUrl = getEnvString(SCM_URL_ENV_VAR, prop, scmUrl);
+        zipThreads = getEnvInt(ZIP_THREADS_ENV_VAR, prop, zipThreads);
+        zipCompressionLevel = getEnvInt(ZIP_COMPRESSION_LEVEL_ENV_VAR, prop, zipCompressionLevel);
+        deltaDeploy = getEnvBool(DELTA_DEPLOY_ENV_VAR, prop, deltaDeploy);
+        appUrl = getEnvString(APP_URL_ENV_VAR, prop, appUrl);
+        warmupParallelism = getEnvInt(WARMUP_PARALLELISM_ENV_VAR, prop, warmupParallelism);
+        warmupTimeout = getEnvInt(WARMUP_TIMEOUT_ENV_VAR, prop, warmupTimeout);
+        asyncDeploy = getEnvBool(ASYNC_DEPLOY_ENV_VAR, prop, asyncDeploy);
+        deployStatusTimeout = getEnvInt(DEPLOY_STATUS_TIMEOUT_ENV_VAR, prop, deployStatusTimeout);
+        httpConnectTimeout = getEnvInt(HTTP_CONNECT_TIMEOUT_ENV_VAR, prop, httpConnectTimeout);
+        httpRequestTimeout = getEnvInt(HTTP_REQUEST_TIMEOUT_ENV_VAR, prop, httpRequestTimeout);
+        httpRetries = getEnvInt(HTTP_RETRIES_ENV_VAR, prop, httpRetries);
+        payloadIncludes = getEnvString(PAYLOAD_INCLUDES_ENV_VAR, prop, payloadIncludes);
+        payloadExcludes = getEnvString(PAYLOAD_EXCLUDES_ENV_VAR, prop, payloadExcludes);
+        payloadDedupeJars = getEnvBool(PAYLOAD_DEDUPE_JARS_ENV_VAR, prop, payloadDedupeJars);
+        payloadStripJars = getEnvBool(PAYLOAD_STRIP_JARS_ENV_VAR, prop, payloadStripJars);
+        writeMetrics = getEnvBool(WRITE_METRICS_ENV_VAR, prop, writeMetrics);
+        runFromPackage = getEnvBool(RUN_FROM_PACKAGE_ENV_VAR, prop, isRunFromPackageGenerated());
+    }
+
+    private boolean isRunFromPackageGenerated() throws IOException {
+        // the `runFromPackage` parameter of azf-generate-config puts the app setting into local.settings.json
+        Path localSettings = getConfigFolderPath().resolve(AzfGenerateConfigMojo.LOCAL_SETTINGS_FILE);
+        if (!Files.isRegularFile(localSettings)) {
+            return false;
+        }
+        return new ObjectMapper().readTree(localSettings.toFile()).path("Values").path(RUN_FROM_PACKAGE_SETTING)
+                .asText("").equals("1");
+    }
+
+    private Path getConfigFile() {
+        // the file of the module takes precedence over the one of the reactor root; neither depends on the working
+        // directory, so that modules built in parallel each read their own
+        List<Path> candidates = new ArrayList<>();
+        candidates.add(project.getBasedir().toPath().resolve(SERVERLESS_CONFIG_FILE));
+        if (executionRootDirectory != null) {
+            candidates.add(Paths.get(executionRootDirectory, SERVERLESS_CONFIG_FILE));
+        }
+        return candidates.stream().filter(Files::isRegularFile).findFirst().orElse(null);
     }
 
     private String getEnvString(String key, Properties prop, String defaultValue) {
@@ -139,61 +310,230 @@ public class AzfDeployMojo extends AbstractMojo {
         }
     }
 
+    private int getEnvInt(String key, Properties prop, int defaultValue) {
+        String value = getEnvString(key, prop, null);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
     private void zipConfigAndCode() throws IOException {
         String zipFilePath = Paths.get(project.getBuild().getDirectory(), configFolder, zipFileName).toString();
         getLog().info("Zipping code and configuration to " + zipFilePath);
-        Path folder = Paths.get(project.getBuild().getDirectory(), configFolder);
-        try (FileOutputStream fos = new FileOutputStream(zipFilePath);
-                ZipOutputStream zipOut = new ZipOutputStream(fos);
-                Stream<Path> walk = Files.walk(folder, Integer.MAX_VALUE)) {
+        try (FileOutputStream fos = new FileOutputStream(zipFilePath)) {
+            writeZip(fos);
+        } catch (IOException e) {
+            // an incomplete archive must not be uploaded by a later run
+            Files.deleteIfExists(Paths.get(zipFilePath));
+            throw e;
+        }
+        Commons.chmod777(new File(zipFilePath));
+    }
+
+    private Path getConfigFolderPath() {
+        return Paths.get(project.getBuild().getDirectory(), configFolder);
+    }
+
+    private boolean isDeployable(Path file) {
+        return !file.getFileName().toString().equals(zipFileName)
+                && !getConfigFolderPath().relativize(file).toString().contains(AzfGenerateConfigMojo.DOCKERFILE)
+                && !file.getFileName().toString().equals(AzfGenerateConfigMojo.DOCKERIGNORE_FILE)
+                && !file.getFileName().toString().equals(DEPLOYMENT_MANIFEST_FILE);
+    }
+
+    private void shrinkPayload(BuildMetrics.Phase phase) throws IOException {
+        // the zip, the deployment manifest and the delta are all made of the entries selected here
+        Path strippedJarsFolder = payloadStripJars ? Paths.get(project.getBuild().getDirectory(), STRIPPED_JARS_FOLDER) : null;
+        PayloadShrinker shrinker = new PayloadShrinker(Arrays.asList(payloadIncludes.split(",")),
+                Arrays.asList(payloadExcludes.split(",")), payloadDedupeJars, strippedJarsFolder);
+        payload = shrinker.shrink(getConfigFolderPath(), this::isDeployable);
+        payloadHashes = shrinker.getHashes();
+
+        long totalBytes = 0;
+        for (Map.Entry<String, long[]> saving : shrinker.getSavings().entrySet()) {
+            getLog().info(String.format("Payload rule %s: %d files, %d kB saved", saving.getKey(), saving.getValue()[0],
+                    saving.getValue()[1] / 1_024));
+            totalBytes += saving.getValue()[1];
+        }
+        getLog().info(String.format("Deploying %d files and folders, %d kB left out of the package", payload.size(),
+                totalBytes / 1_024));
+        long payloadBytes = 0;
+        for (Path file : payload.values()) {
+            payloadBytes += Files.isRegularFile(file) ? Files.size(file) : 0;
+        }
+        phase.add("files", payload.size()).add("payloadBytes", payloadBytes).add("bytesLeftOut", totalBytes);
+    }
+
+    private void prepareRunFromPackage() throws IOException {
+        // with WEBSITE_RUN_FROM_PACKAGE=1, Kudu keeps the zip deployed with zipdeploy and mounts it read-only as
+        // wwwroot instead of extracting it; without the setting the zip is extracted as usual
+        if (deltaDeploy) {
+            getLog().warn("Delta deployments are not possible when running from the package, since wwwroot is " +
+                    "read-only. Will deploy the whole package");
+            deltaDeploy = false;
+        }
 
-            walk.filter(file -> !file.getFileName().toString().equals(zipFileName))
-                    .forEach(ExceptionHandling.throwingConsumerWrapper(file ->
-                        Commons.zipSingleFile(file, folder, zipOut)
-            ));
+        // the app settings can only be changed through the management API, so they are written for `az`
+        ObjectMapper mapper = new ObjectMapper();
+        ArrayNode appSettings = mapper.createArrayNode();
+        appSettings.addObject().put("name", RUN_FROM_PACKAGE_SETTING).put("value", "1").put("slotSetting", false);
+        Path appSettingsFile = Paths.get(project.getBuild().getDirectory(), APP_SETTINGS_FILE);
+        mapper.writerWithDefaultPrettyPrinter().writeValue(appSettingsFile.toFile(), appSettings);
+
+        Map<String, String> settings = kudu.getSettings();
+        if (settings == null) {
+            getLog().warn("Could not read the app settings of the function app, make sure " + RUN_FROM_PACKAGE_SETTING +
+                    " is set to 1");
+        } else if (!"1".equals(settings.get(RUN_FROM_PACKAGE_SETTING))) {
+            getLog().warn(String.format("The function app does not have %s=1, so the package will be extracted " +
+                            "into wwwroot. Set it with `az functionapp config appsettings set -g <resource-group> " +
+                            "-n %s --settings @%s`", RUN_FROM_PACKAGE_SETTING, functionAppName, appSettingsFile));
+        } else {
+            getLog().info("The function app runs from the deployed package");
         }
-        Commons.chmod777(Paths.get(project.getBasedir().getPath(), zipFileName).toFile());
+    }
+
+    private void writeZip(OutputStream output) throws IOException {
+        // a package that is mounted is packaged reproducibly, so that an unchanged package keeps its hash
+        new ZipPackager(zipThreads, zipCompressionLevel, runFromPackage).zip(payload, output);
+    }
+
+    private Map<String, String> writeDeploymentManifest() throws IOException {
+        Path manifestFile = getConfigFolderPath().resolve(DEPLOYMENT_MANIFEST_FILE);
+        Map<String, String> manifest = DeploymentManifest.compute(payload, payloadHashes);
+        DeploymentManifest.write(manifestFile, manifest);
+        payload.put(DEPLOYMENT_MANIFEST_FILE, manifestFile);
+        return manifest;
     }
 
     private void deploy() throws IOException {
         getLog().info("Deploying with REST methods");
+        Path zipFile = Paths.get(project.getBuild().getDirectory(), configFolder, zipFileName);
+        HttpResponse<String> response;
+        try (BuildMetrics.Phase phase = metrics.start("upload")) {
+            long uploadedBytes = kudu.getUploadedBytes();
+            response = kudu.upload("POST", getZipDeployPath(), zipFile);
+            phase.add("uploadedBytes", kudu.getUploadedBytes() - uploadedBytes);
+        }
+        checkDeployResponse(response);
+    }
 
-        String encodedCredentials = Base64.getEncoder().encodeToString(
-                String.format("%s:%s", azfUser, azfUserPassword).getBytes()
-        );
-
-        URL url = new URL(String.format("https://%s.scm.azurewebsites.net/api/zipdeploy", functionAppName));
-        HttpURLConnection http = (HttpURLConnection) url.openConnection();
-        http.setRequestMethod("POST");
-        http.setDoOutput(true);
-        http.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-        http.setRequestProperty("Authorization", String.format("Basic %s", encodedCredentials));
-		
-        File binaryFile = Paths.get(project.getBuild().getDirectory(), configFolder, zipFileName).toFile();
-        OutputStream output = http.getOutputStream();
-        Files.copy(binaryFile.toPath(), output);
-        output.flush();
-        output.close();
-
-        if (http.getResponseCode() != HttpURLConnection.HTTP_OK) {
-            getLog().error(String.format("Response: %d %s", http.getResponseCode(), http.getResponseMessage()));
-            getLog().error(http.getResponseMessage());
-            throw new IOException("Could not upload zip using REST");
-        } else {
-            getLog().info("ZIP file uploaded correctly.");
+    private void deployStreaming() throws IOException {
+        // the archive is compressed straight into a chunked request body, so compression and upload overlap and
+        // the archive is never held on disk or in memory
+        getLog().info("Deploying with REST methods, streaming the zip while it is created");
+        HttpResponse<String> response;
+        try (BuildMetrics.Phase phase = metrics.start("zipAndUpload")) {
+            long uploadedBytes = kudu.getUploadedBytes();
+            response = kudu.send("POST", getZipDeployPath(), this::writeZip);
+            phase.add("uploadedBytes", kudu.getUploadedBytes() - uploadedBytes);
         }
-        http.disconnect();
+        checkDeployResponse(response);
+    }
 
+    private String getZipDeployPath() {
+        return asyncDeploy ? "/api/zipdeploy?isAsync=true" : "/api/zipdeploy";
     }
 
+    private boolean deployDelta(Map<String, String> currentManifest) throws IOException {
+        // compares the package with the manifest of the deployed one and only sends the difference; returns false
+        // if the function app does not contain a manifest, in which case the whole package has to be deployed
+        byte[] deployedManifestContent;
+        try (BuildMetrics.Phase phase = metrics.start("downloadManifest")) {
+            deployedManifestContent = kudu.downloadFile(KuduClient.WWWROOT + DEPLOYMENT_MANIFEST_FILE);
+        }
+        if (deployedManifestContent == null) {
+            getLog().info("No deployment manifest found on the function app, deploying the whole package");
+            return false;
+        }
 
-    private void testCallAzf() throws IOException, InterruptedException {
-        TimeUnit.SECONDS.sleep(10); // seems that calling too soon the API worsens the startup time
-        getLog().info("Making first request to the API");
-        URL url = new URL(String.format("https://%s.azurewebsites.net/", functionAppName));
-        HttpURLConnection http = (HttpURLConnection)url.openConnection();
-        getLog().info("Response status code: " + http.getResponseCode());
-        http.disconnect();
+        Map<String, String> deployedManifest = DeploymentManifest.read(deployedManifestContent);
+        Set<String> changedFiles = new HashSet<>();
+        currentManifest.forEach((file, hash) -> {
+            if (!hash.equals(deployedManifest.get(file))) {
+                changedFiles.add(file);
+            }
+        });
+        List<String> removedFiles = new ArrayList<>(deployedManifest.keySet());
+        removedFiles.removeAll(currentManifest.keySet());
+
+        if (changedFiles.isEmpty() && removedFiles.isEmpty()) {
+            getLog().info("The function app is already up to date, nothing to deploy");
+            return true;
+        }
+        getLog().info(String.format("Deploying delta: %d added or changed files, %d removed files",
+                changedFiles.size(), removedFiles.size()));
+
+        // files are removed before the new manifest is uploaded, so a failed deployment is simply redone next time
+        try (BuildMetrics.Phase phase = metrics.start("deleteRemoved")) {
+            for (String file : removedFiles) {
+                getLog().debug("Deleting " + file);
+                kudu.deleteFile(KuduClient.WWWROOT + file);
+            }
+            phase.add("files", removedFiles.size());
+        }
+
+        // host.json is always sent, since changing it makes the functions host restart and load the new code
+        changedFiles.add(HOST_FILE);
+        changedFiles.add(DEPLOYMENT_MANIFEST_FILE);
+        SortedMap<String, Path> delta = new TreeMap<>(payload);
+        delta.keySet().retainAll(changedFiles);
+        HttpResponse<String> response;
+        try (BuildMetrics.Phase phase = metrics.start("zipAndUploadDelta")) {
+            long uploadedBytes = kudu.getUploadedBytes();
+            response = kudu.send("PUT", "/api/zip/" + KuduClient.WWWROOT, output ->
+                    new ZipPackager(zipThreads, zipCompressionLevel).zip(delta, output));
+            phase.add("files", delta.size()).add("uploadedBytes", kudu.getUploadedBytes() - uploadedBytes);
+        }
+        if (response.statusCode() / 100 != 2) {
+            getLog().error(String.format("Response: %d %s", response.statusCode(), response.body()));
+            throw new IOException("Could not upload delta zip using REST");
+        }
+        return true;
+    }
+
+    private void checkDeployResponse(HttpResponse<String> response) throws IOException {
+        if (response.statusCode() == HttpURLConnection.HTTP_OK) {
+            getLog().info("ZIP file uploaded correctly.");
+        } else if (response.statusCode() == HttpURLConnection.HTTP_ACCEPTED) {
+            // the zip was received and is being extracted, the location header points to the deployment status
+            Optional<String> location = response.headers().firstValue("Location");
+            if (location.isEmpty() || deployStatusTimeout <= 0) {
+                getLog().info("ZIP file uploaded correctly, the deployment continues in the background.");
+                return;
+            }
+            getLog().info("ZIP file uploaded correctly, waiting for the deployment to complete");
+            try (BuildMetrics.Phase phase = metrics.start("awaitDeployment")) {
+                kudu.awaitDeployment(location.get(), deployStatusTimeout);
+            }
+            getLog().info("Deployment completed.");
+        } else {
+            getLog().error(String.format("Response: %d %s", response.statusCode(), response.body()));
+            throw new IOException("Could not upload zip using REST");
+        }
+    }
+
+    private void warmUp(BuildMetrics.Phase phase) throws InterruptedException {
+        // waits until the new code answers and then initializes the resources by calling the safe endpoints once
+        List<RestEndpoint> endpoints;
+        try {
+            endpoints = EndpointWarmer.getSafeEndpoints(ProjectParser.getEndpoints(project));
+        } catch (IOException | IllegalStateException e) {
+            getLog().warn("Could not find the endpoints of the project, skipping warm-up: " + e.getMessage());
+            return;
+        }
+        if (endpoints.isEmpty()) {
+            // readiness is only known from a response of the handler itself
+            getLog().info("No GET or HEAD endpoint without path parameters found, skipping warm-up");
+            return;
+        }
+        phase.add("endpoints", endpoints.size());
+
+        EndpointWarmer warmer = new EndpointWarmer(appUrl != null ? appUrl :
+                String.format("https://%s.azurewebsites.net/", functionAppName), warmupParallelism, getLog());
+        if (!warmer.waitUntilReady(endpoints.get(0), warmupTimeout)) {
+            getLog().warn("The function app did not answer within " + warmupTimeout + " seconds, skipping warm-up");
+            return;
+        }
+        warmer.warmUp(endpoints);
     }
 
 }
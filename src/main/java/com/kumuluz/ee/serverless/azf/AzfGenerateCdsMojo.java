@@ -0,0 +1,201 @@
+package com.kumuluz.ee.serverless.azf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.kumuluz.ee.serverless.common.CdsClassPath;
+import com.kumuluz.ee.serverless.common.Commons;
+import com.kumuluz.ee.serverless.common.ProjectParser;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the application from the configuration folder once, with the command line of the custom handler in
+ * `host.json`, and dumps the classes it loads into an AppCDS archive which is then used by every cold start.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+@Mojo(name = "azf-generate-cds", defaultPhase = LifecyclePhase.PACKAGE)
+public class AzfGenerateCdsMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    protected MavenProject project;
+
+    @Parameter(defaultValue = "${project.build.directory}")
+    private String targetFolder;
+
+    @Parameter(property = "configFolder", required = false, defaultValue = "azf-config")
+    private String configFolder;
+
+    @Parameter(property = "cdsJavaExecutable", required = false)
+    private String cdsJavaExecutable; // if not set, use the linked runtime or else the JVM running maven; should match the runtime JVM
+
+    @Parameter(property = "cdsTrainingTimeout", required = false, defaultValue = "120")
+    private int cdsTrainingTimeout; // seconds to wait for the application to start
+
+    private static final String TRAINING_LOG_FILE = "azf-cds-training.log";
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        Path containerFolder = Paths.get(targetFolder, configFolder);
+        Path archive = containerFolder.resolve(AzfGenerateConfigMojo.CDS_ARCHIVE_FILE);
+        if (!Files.exists(containerFolder.resolve(AzfGenerateConfigMojo.HOST_FILE))) {
+            throw new MojoExecutionException("Configuration not found in " + containerFolder +
+                    ", run the `azf-generate-config` goal first");
+        }
+
+        boolean exploded = !Commons.getIsJarPackaging(project);
+        Path classesJar = containerFolder.resolve(CdsClassPath.CLASSES_JAR);
+
+        try {
+            List<RestEndpoint> endpoints = EndpointWarmer.getSafeEndpoints(ProjectParser.getEndpoints(project));
+            if (endpoints.isEmpty()) {
+                // only a response of the handler itself tells that the application started
+                getLog().warn("No GET or HEAD endpoint without path parameters found to tell when the application " +
+                        "started, skipping the CDS archive");
+                return;
+            }
+
+            Files.deleteIfExists(archive);
+            if (exploded) {
+                // the JVM refuses to dump archives when a non-empty folder, such as `classes`, is on the class path
+                CdsClassPath.writeClassesJar(containerFolder.resolve("classes"), classesJar);
+            }
+            runTraining(containerFolder, archive, exploded, endpoints);
+
+            if (!Files.exists(archive)) {
+                getLog().warn("The JVM did not dump a CDS archive, see " + Paths.get(targetFolder, TRAINING_LOG_FILE) +
+                        ". The application will start without it");
+                return;
+            }
+            getLog().info(String.format("Dumped CDS archive %s (%d kB)", archive, Files.size(archive) / 1_024));
+            addArchiveToHostJson(containerFolder, exploded);
+            addArchiveToDockerfile(containerFolder.resolve(AzfGenerateConfigMojo.DOCKERFILE), exploded);
+
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to generate CDS archive", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while generating CDS archive", e);
+        }
+    }
+
+    private void runTraining(Path containerFolder, Path archive, boolean exploded, List<RestEndpoint> endpoints)
+            throws IOException, InterruptedException {
+        // the archive is only used with the JVM flags it was dumped with, e.g. the same collector, so the handler is
+        // started with the executable and the arguments of host.json, only the archive being written instead of read
+        HandlerLauncher launcher = new HandlerLauncher(containerFolder);
+        if (cdsJavaExecutable != null) {
+            launcher.setExecutable(cdsJavaExecutable);
+        }
+        launcher.removeArguments(AzfGenerateConfigMojo.CDS_ARCHIVE_ARGUMENT);
+        launcher.addJvmArgument("-XX:ArchiveClassesAtExit=" + archive.getFileName());
+        if (exploded) {
+            // with the separator of the build platform, which the training runs on
+            launcher.setClassPath(CdsClassPath.getClassPath(containerFolder.resolve("dependency"), File.pathSeparator));
+        }
+
+        int port = HandlerLauncher.getFreePort();
+        File log = Paths.get(targetFolder, TRAINING_LOG_FILE).toFile();
+        Files.deleteIfExists(log.toPath());
+        getLog().info("Starting the application for the CDS training run: " + String.join(" ", launcher.getCommand()));
+        Process process = launcher.start(port, log);
+
+        try {
+            // the application has started once an endpoint answers successfully, not as soon as the port is open
+            EndpointWarmer warmer = new EndpointWarmer(String.format("http://localhost:%d/", port), 1, getLog());
+            if (warmer.waitUntilReady(endpoints.get(0), cdsTrainingTimeout, process::isAlive)) {
+                // exercise the endpoints, so that the classes used when serving requests end up in the archive too
+                warmer.warmUp(endpoints);
+            } else {
+                getLog().warn("The application did not answer within " + cdsTrainingTimeout + " seconds");
+            }
+        } finally {
+            // a graceful shutdown makes the JVM write the archive
+            process.destroy();
+            if (!process.waitFor(cdsTrainingTimeout, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private void addArchiveToHostJson(Path containerFolder, boolean exploded) throws IOException {
+        // the file is only rewritten when something is missing, so that it is not rewritten on every build
+        Path hostFile = containerFolder.resolve(AzfGenerateConfigMojo.HOST_FILE);
+        String argument = AzfGenerateConfigMojo.CDS_ARCHIVE_ARGUMENT + AzfGenerateConfigMojo.CDS_ARCHIVE_FILE;
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode host = mapper.readTree(hostFile.toFile());
+        JsonNode argumentsNode = host.path("customHandler").path("description").path("arguments");
+        if (!argumentsNode.isArray()) {
+            throw new IOException("No custom handler arguments found in " + hostFile);
+        }
+        ArrayNode arguments = (ArrayNode) argumentsNode;
+        List<String> values = new ArrayList<>();
+        arguments.forEach(existing -> values.add(existing.asText()));
+
+        boolean changed = false;
+        if (!values.contains(argument)) {
+            arguments.insert(0, argument);
+            values.add(0, argument);
+            getLog().info("Added " + argument + " to " + hostFile);
+            changed = true;
+        }
+        int classPathIndex = HandlerLauncher.getClassPathIndex(values);
+        if (exploded && classPathIndex >= 0) {
+            // the class path of the training run, with the separator host.json was generated with
+            String separator = values.get(classPathIndex).contains(";") ? ";" : ":";
+            String classPath = CdsClassPath.getClassPath(containerFolder.resolve("dependency"), separator);
+            if (!classPath.equals(values.get(classPathIndex))) {
+                arguments.set(classPathIndex, arguments.textNode(classPath));
+                getLog().info("Replaced the class path in " + hostFile + " with " + CdsClassPath.CLASSES_JAR +
+                        " and the dependency jars");
+                changed = true;
+            }
+        }
+        if (changed) {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(hostFile.toFile(), host);
+        }
+    }
+
+    private void addArchiveToDockerfile(Path dockerfile, boolean exploded) throws IOException {
+        // the configuration goal only copies an archive that existed when it ran, so the first build adds the layers
+        // here; they are the last layers of the template as well
+        if (!Files.exists(dockerfile)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(dockerfile);
+        boolean changed = false;
+        if (exploded && !lines.contains(AzfGenerateConfigMojo.CDS_CLASSES_JAR_COPY)) {
+            // before the archive, which may already be there
+            int archiveIndex = lines.indexOf(AzfGenerateConfigMojo.CDS_ARCHIVE_COPY);
+            lines.add(archiveIndex >= 0 ? archiveIndex : lines.size(), AzfGenerateConfigMojo.CDS_CLASSES_JAR_COPY);
+            changed = true;
+        }
+        if (!lines.contains(AzfGenerateConfigMojo.CDS_ARCHIVE_COPY)) {
+            lines.add(AzfGenerateConfigMojo.CDS_ARCHIVE_COPY);
+            changed = true;
+        }
+        if (!changed) {
+            return;
+        }
+        Files.write(dockerfile, lines);
+        getLog().info("Added the CDS archive to " + dockerfile);
+    }
+
+}
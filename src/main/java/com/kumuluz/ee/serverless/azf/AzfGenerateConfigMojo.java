@@ -1,19 +1,34 @@
 package com.kumuluz.ee.serverless.azf;
 
-import com.github.mustachejava.DefaultMustacheFactory;
-import com.github.mustachejava.Mustache;
-import com.github.mustachejava.MustacheFactory;
-import com.kumuluz.ee.serverless.azf.error_handling.ExceptionHandling;
+import com.kumuluz.ee.serverless.common.BoundedFileWriter;
+import com.kumuluz.ee.serverless.common.BuildMetrics;
+import com.kumuluz.ee.serverless.common.CdsClassPath;
+import com.kumuluz.ee.serverless.common.CodeStager;
 import com.kumuluz.ee.serverless.common.Commons;
+import com.kumuluz.ee.serverless.common.ConcurrencyLimits;
+import com.kumuluz.ee.serverless.common.KeepWarm;
+import com.kumuluz.ee.serverless.common.ConfigManifest;
+import com.kumuluz.ee.serverless.common.FunctionConsolidator;
+import com.kumuluz.ee.serverless.common.JvmArguments;
 import com.kumuluz.ee.serverless.common.ProjectParser;
+import com.kumuluz.ee.serverless.common.ResourceIndex;
+import com.kumuluz.ee.serverless.common.RouteTable;
+import com.kumuluz.ee.serverless.common.RuntimeLinker;
+import com.kumuluz.ee.serverless.common.TemplateRegistry;
+import com.kumuluz.ee.serverless.common.enums.AuthLevelEnum;
+import com.kumuluz.ee.serverless.common.enums.ConsolidationStrategyEnum;
+import com.kumuluz.ee.serverless.common.enums.LaunchProfileEnum;
+import com.kumuluz.ee.serverless.common.enums.StagingStrategyEnum;
+import com.kumuluz.ee.serverless.common.pojo.FunctionDefinition;
+import com.kumuluz.ee.serverless.common.pojo.IndexedClass;
 import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.util.FileUtils;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -21,15 +36,19 @@ import java.nio.file.Files;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * @author Boris Radovic
  * @since 1.0.0
  */
 
-@Mojo(name = "azf-generate-config", defaultPhase = LifecyclePhase.PACKAGE)
+@Mojo(name = "azf-generate-config", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true,
+        requiresDependencyResolution = ResolutionScope.RUNTIME)
 public class AzfGenerateConfigMojo extends AbstractMojo {
 
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
@@ -50,6 +69,75 @@ public class AzfGenerateConfigMojo extends AbstractMojo {
     @Parameter(property = "os", required = false)
     private String os; // relevant only when exploded packaging
 
+    @Parameter(property = "incremental", required = false, defaultValue = "true")
+    private boolean incremental; // only write the files whose inputs changed since the previous build
+
+    @Parameter(property = "scanThreads", required = false)
+    private Integer scanThreads; // if not set, use one thread per available processor
+
+    @Parameter(property = "scanDependencies", required = false, defaultValue = "false")
+    private boolean scanDependencies; // also scan the runtime dependencies for JAX-RS classes in the project's packages
+
+    @Parameter(property = "writeThreads", required = false)
+    private Integer writeThreads; // if not set, use one thread per available processor
+
+    @Parameter(property = "stagingStrategy", required = false, defaultValue = "copy")
+    private String stagingStrategy; // how the code is placed in the config folder: `copy`, `hardlink` or `symlink`
+
+    @Parameter(property = "launchProfile", required = false, defaultValue = "default")
+    private String launchProfile; // JVM tuning of the custom handler: `default`, `cold-start`, `throughput` or `low-memory`
+
+    @Parameter(property = "jvmArguments", required = false)
+    private List<String> jvmArguments; // merged into the arguments of the launch profile, overriding the same options
+
+    @Parameter(property = "generateResourceIndex", required = false, defaultValue = "false")
+    private boolean generateResourceIndex; // write the JAX-RS classes found by the scan into the compiled classes
+
+    @Parameter(property = "generateRouteTable", required = false, defaultValue = "false")
+    private boolean generateRouteTable; // write the route trie and the filter that labels requests with their endpoint before Jersey matches them
+
+    @Parameter(property = "functionConsolidation", required = false, defaultValue = "none")
+    private String functionConsolidation; // how endpoints are grouped into functions: `none`, `class`, `prefix` or `proxy`
+
+    @Parameter(property = "authLevel", required = false, defaultValue = "anonymous")
+    private String authLevel; // key required to call the functions: `anonymous`, `function` or `admin`
+
+    @Parameter(required = false)
+    private Map<String, String> functionAuthLevels; // auth level per function, resource class or method, e.g. `<Admin>admin</Admin>`
+
+    @Parameter(required = false)
+    private Map<String, String> endpointConcurrency; // concurrent requests per resource method or class, e.g. `<Reports.export>2</Reports.export>`
+
+    @Parameter(property = "httpMaxConcurrentRequests", required = false)
+    private Integer httpMaxConcurrentRequests; // requests an instance serves in parallel; if not set, the default of the plan
+
+    @Parameter(property = "httpMaxOutstandingRequests", required = false)
+    private Integer httpMaxOutstandingRequests; // requests an instance queues and serves before it answers 429
+
+    @Parameter(property = "httpDynamicThrottles", required = false)
+    private Boolean httpDynamicThrottles; // answer 429 while the instance is short of CPU, memory or connections
+
+    @Parameter(property = "functionTimeout", required = false)
+    private String functionTimeout; // e.g. `00:10:00`, or `-1` for no timeout on the Premium and Dedicated plans
+
+    @Parameter(property = "jlinkRuntime", required = false, defaultValue = "false")
+    private boolean jlinkRuntime; // bundle a runtime linked with only the JDK modules the application uses
+
+    @Parameter(property = "jlinkJavaHome", required = false)
+    private File jlinkJavaHome; // JDK to link the modules from, of the same version as the build JDK; if not set, use the build JDK
+
+    @Parameter(property = "jlinkAddModules", required = false, defaultValue = "jdk.crypto.ec")
+    private List<String> jlinkAddModules; // modules not found by jdeps, e.g. the ones loaded as services
+
+    @Parameter(property = "runFromPackage", required = false, defaultValue = "false")
+    private boolean runFromPackage; // the function app runs from the mounted package, sets WEBSITE_RUN_FROM_PACKAGE
+
+    @Parameter(property = "writeMetrics", required = false, defaultValue = "true")
+    private boolean writeMetrics; // phase timings and counters in target/azf-metrics-*.json and target/azf-trace-*.json
+
+    @Parameter(property = "keepWarmSchedule", required = false)
+    private String keepWarmSchedule; // NCRONTAB schedule of a timer function that keeps an instance warm, e.g. `0 */5 * * * *`
+
     protected static final String TEMPLATES_FOLDER = "TEMPLATES";
     protected static final String FUNCTIONS_FILE = "function.json";
     protected static final String HOST_FILE = "host.json";
@@ -57,68 +145,364 @@ public class AzfGenerateConfigMojo extends AbstractMojo {
     protected static final String HOST_FILE_JAR = "host_jar.json";
     protected static final String LOCAL_SETTINGS_FILE = "local.settings.json";
     protected static final String DOCKERFILE = "Dockerfile";
+    protected static final String DOCKERIGNORE_FILE = ".dockerignore";
+    protected static final String DOCKERIGNORE_TEMPLATE = "dockerignore";
+    protected static final String KEEP_WARM_TEMPLATE = "keep_warm_function.json";
+    protected static final String MANIFEST_FILE_SUFFIX = ".manifest";
+    protected static final String CDS_ARCHIVE_FILE = "app.jsa";
+    protected static final String CDS_ARCHIVE_ARGUMENT = "-XX:SharedArchiveFile=";
+    // the last lines of the Dockerfile when the archive exists, see the template
+    protected static final String CDS_CLASSES_JAR_COPY = "COPY [\"" + CdsClassPath.CLASSES_JAR + "\", \"/home/site/wwwroot/\"]";
+    protected static final String CDS_ARCHIVE_COPY = "COPY [\"" + CDS_ARCHIVE_FILE + "\", \"/home/site/wwwroot/\"]";
+    protected static final String RUNTIME_FOLDER = "runtime";
+    private static final String RUNTIME_BUILD_FOLDER = "azf-runtime";
+
+    // counters of the metrics
+    private static final String WRITTEN_FILES = "writtenFiles";
+    private static final String UNCHANGED_FILES = "unchangedFiles";
+    private static final String STAGED_BYTES = "stagedBytes";
+    private static final String RENDERED_BYTES = "renderedBytes";
+
+    // `-1` or a time span like `00:05:00` or `1.00:00:00`
+    private static final Pattern FUNCTION_TIMEOUT = Pattern.compile("-1|(\\d+\\.)?\\d{1,2}:[0-5]\\d:[0-5]\\d");
 
     private static final String EE_CLS_LOADER_FOLDER = Paths.get("tmp", "EeClassLoader").toString();
 
     private boolean jarPackaging; // true when jar, false when "copy-dependencies"
+    private boolean runtimeLinked; // true when the handler runs on the linked runtime
+    private boolean endpointsLimited; // true when the concurrency limit filter is in the compiled classes
+
+    private ConfigManifest manifest;
+    private BoundedFileWriter writer;
+    private CodeStager stager;
+    private final BuildMetrics metrics = new BuildMetrics("azf-generate-config");
 
     @Override
     public void execute() throws MojoExecutionException {
         jarPackaging = Commons.getIsJarPackaging(project);
         String jarMsg = jarPackaging ? "Detected jar packaging" : "Detected `copy-dependencies` packaging";
         getLog().info(jarMsg);
+        if (runFromPackage && jarPackaging) {
+            // the loader cannot write into a mounted package, and its folder is not taken from the JVM arguments
+            throw new MojoExecutionException("`runFromPackage` is not possible with the jar packaging, since the " +
+                    "KumuluzEE class loader extracts the dependencies into " + EE_CLS_LOADER_FOLDER + " of the " +
+                    "function app, which is read-only when mounted. Use the `copy-dependencies` packaging");
+        }
 
         try {
 
-            createDirectoryStructure();
-            List<RestEndpoint> endpoints = ProjectParser.getEndpoints(project);
+            try (BuildMetrics.Phase phase = metrics.start("prepare")) {
+                createDirectoryStructure();
+                Path manifestFile = Paths.get(targetFolder, configFolder + MANIFEST_FILE_SUFFIX);
+                manifest = ConfigManifest.load(manifestFile, Paths.get(targetFolder, configFolder), incremental);
+            }
+
+            Collection<IndexedClass> classes;
+            List<RestEndpoint> endpoints;
+            try (BuildMetrics.Phase phase = metrics.start("scan")) {
+                classes = ProjectParser.getClasses(project,
+                        scanThreads != null ? scanThreads : Runtime.getRuntime().availableProcessors(), scanDependencies);
+                endpoints = ProjectParser.getEndpoints(classes);
+                phase.add("classes", classes.size()).add("endpoints", endpoints.size());
+            }
+            try (BuildMetrics.Phase phase = metrics.start("index")) {
+                writeRouteTable(classes);
+                writeConcurrencyLimits(classes);
+                writeKeepWarmServlet();
+                if (generateResourceIndex) {
+                    writeResourceIndex(classes);
+                }
+            }
 
             getLog().info("Found " + endpoints.size() + " endpoints in total");
             endpoints.forEach(endpoint -> getLog().info("\t\t" + endpoint));
 
-            createConfigFiles(endpoints);
-            copyCode();
+            if (jlinkRuntime) {
+                try (BuildMetrics.Phase phase = metrics.start("linkRuntime")) {
+                    linkRuntime();
+                }
+            }
+
+            // the files are written in the background, the write phase ends when all of them are
+            try (BuildMetrics.Phase writePhase = metrics.start("write");
+                    BoundedFileWriter fileWriter = new BoundedFileWriter(
+                            writeThreads != null ? writeThreads : Runtime.getRuntime().availableProcessors())) {
+                writer = fileWriter;
+                try (BuildMetrics.Phase phase = metrics.start("render")) {
+                    phase.add("functions", createConfigFiles(endpoints));
+                }
+                try (BuildMetrics.Phase phase = metrics.start("stage")) {
+                    copyCode();
+                    if (runtimeLinked) {
+                        copyDirectory(Paths.get(targetFolder, RUNTIME_BUILD_FOLDER), RUNTIME_FOLDER);
+                    }
+                }
+
+                if (generateDockerfile) {
+                    try (BuildMetrics.Phase phase = metrics.start("dockerfile")) {
+                        generateDockerfile();
+                    }
+                }
+            }
 
-            if (generateDockerfile) {
-                generateDockerfile();
+            int removedFiles;
+            try (BuildMetrics.Phase phase = metrics.start("manifest")) {
+                removedFiles = manifest.removeStaleFiles();
+                manifest.save();
+                phase.add("removedFiles", removedFiles);
             }
+            getLog().info(String.format("Configuration folder updated: %d files written, %d unchanged, %d removed",
+                    metrics.get(WRITTEN_FILES), metrics.get(UNCHANGED_FILES), removedFiles));
 
         } catch (IOException e) {
             throw new MojoExecutionException("Failed to generate config", e);
+        } finally {
+            writeMetrics();
+        }
+    }
+
+    private void writeMetrics() {
+        // also written when the goal failed, to show where it did
+        if (!writeMetrics) {
+            return;
+        }
+        try {
+            Path metricsFile = metrics.write(Paths.get(targetFolder));
+            getLog().info("Phase timings: " + metrics.getSummary() + ", written to " + metricsFile);
+        } catch (IOException e) {
+            getLog().warn("Could not write the metrics: " + e.getMessage());
         }
     }
 
-    private void createConfigFiles(List<RestEndpoint> endpoints) throws IOException {
-        Path baseDirectory = Paths.get(targetFolder, configFolder);
+    private void writeResourceIndex(Collection<IndexedClass> classes) throws IOException {
+        // written before the code is staged, so that the exploded layout picks it up
+        List<String> filters = new ArrayList<>();
+        if (generateRouteTable) {
+            filters.add(RouteTable.FILTER_CLASS);
+        }
+        if (endpointsLimited) {
+            filters.add(ConcurrencyLimits.FILTER_CLASS);
+        }
+        boolean written = ResourceIndex.write(Paths.get(project.getBuild().getOutputDirectory()), classes, filters);
+        if (written && jarPackaging) {
+            getLog().warn("The JAX-RS resource index changed after the jar was built, so the jar does not contain it. " +
+                    "Add the `azf-generate-index` goal to the build, it runs before the jar is packaged");
+        }
+    }
 
-        endpoints.stream().parallel().forEach(ExceptionHandling.throwingConsumerWrapper(endpoint -> {
-            // create folder
-            Path methodFolder = Paths.get(baseDirectory.toString(), endpoint.getFolderName());
-            Files.createDirectories(methodFolder);
+    private void writeRouteTable(Collection<IndexedClass> classes) throws IOException {
+        Path classesFolder = Paths.get(project.getBuild().getOutputDirectory());
+        boolean changed = generateRouteTable ? RouteTable.write(classesFolder, classes) : RouteTable.remove(classesFolder);
+        if (changed && jarPackaging) {
+            getLog().warn("The route table changed after the jar was built, so the jar does not contain it. " +
+                    "Add the `azf-generate-index` goal to the build, it runs before the jar is packaged");
+        }
+    }
 
-            // set values in configuration
-            MustacheFactory mf = new DefaultMustacheFactory();
-            Mustache m = mf.compile(Paths.get(TEMPLATES_FOLDER, FUNCTIONS_FILE).toString());
-            StringWriter writer = new StringWriter();
-            m.execute(writer, endpoint).flush();
+    private void writeConcurrencyLimits(Collection<IndexedClass> classes) throws IOException {
+        // the host limits the requests of the whole function app only, the limits per endpoint are enforced in the handler
+        Path classesFolder = Paths.get(project.getBuild().getOutputDirectory());
+        SortedMap<String, Integer> limits = ConcurrencyLimits.resolve(classes, endpointConcurrency);
+        endpointsLimited = !limits.isEmpty();
+        limits.forEach((resourceMethod, limit) ->
+                getLog().info("\t\t" + resourceMethod + " serves at most " + limit + " concurrent requests"));
+        boolean changed = endpointsLimited ? ConcurrencyLimits.write(classesFolder, limits)
+                : ConcurrencyLimits.remove(classesFolder);
+        if (changed && jarPackaging) {
+            getLog().warn("The concurrency limits changed after the jar was built, so the jar does not contain them. " +
+                    "Add the `azf-generate-index` goal to the build, it runs before the jar is packaged");
+        }
+    }
 
-            // write configuration to file
-            Commons.writeConfigFile(writer.toString(), methodFolder.toString(), FUNCTIONS_FILE);
+    private void writeKeepWarmServlet() throws IOException {
+        // without the servlet, every invocation of the timer function would fail with 404
+        Path classesFolder = Paths.get(project.getBuild().getOutputDirectory());
+        boolean changed = KeepWarm.isEnabled(keepWarmSchedule) ? KeepWarm.write(classesFolder)
+                : KeepWarm.remove(classesFolder);
+        if (changed && jarPackaging) {
+            getLog().warn("The keep-warm servlet changed after the jar was built, so the jar does not contain it. " +
+                    "Add the `azf-generate-index` goal to the build, it runs before the jar is packaged");
+        }
+    }
+
+    private void linkRuntime() throws IOException {
+        // the runtime is linked outside of the configuration folder and staged like the code
+        Path javaHome = jlinkJavaHome != null ? jlinkJavaHome.toPath() : Paths.get(System.getProperty("java.home"));
+        if (jlinkJavaHome == null && useWindowsSeparator() != Commons.isWindowsOs()) {
+            getLog().warn("The runtime is linked for the platform of the build, set `jlinkJavaHome` to a JDK for " +
+                    "the platform of the function app");
+        }
+        RuntimeLinker linker = new RuntimeLinker(javaHome);
+        List<Path> roots = new ArrayList<>();
+        if (jarPackaging) {
+            roots.add(Paths.get(targetFolder, project.getBuild().getFinalName() + ".jar"));
+        } else {
+            roots.add(Paths.get(targetFolder, "classes"));
+            Path dependencyFolder = Paths.get(targetFolder, "dependency");
+            if (Files.isDirectory(dependencyFolder)) {
+                try (Stream<Path> files = Files.list(dependencyFolder)) {
+                    files.filter(file -> file.toString().endsWith(".jar")).sorted().forEach(roots::add);
+                }
+            }
+        }
+
+        try {
+            SortedSet<String> modules = linker.findModules(roots);
+            if (jlinkAddModules != null) {
+                for (String module : jlinkAddModules) {
+                    // e.g. jdk.crypto.ec was merged into java.base in later versions
+                    if (Files.exists(javaHome.resolve("jmods").resolve(module.trim() + ".jmod"))) {
+                        modules.add(module.trim());
+                    } else if (!module.trim().isEmpty()) {
+                        getLog().warn("Module " + module.trim() + " not found in " + javaHome + ", skipping it");
+                    }
+                }
+            }
+            getLog().info("Linking a runtime with the modules " + String.join(",", modules));
+            Path runtime = Paths.get(targetFolder, RUNTIME_BUILD_FOLDER);
+            if (!linker.link(modules, runtime)) {
+                getLog().info("The linked runtime is up to date");
+            }
+            runtimeLinked = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while linking the runtime", e);
+        }
+    }
+
+    private int createConfigFiles(List<RestEndpoint> endpoints) throws IOException, MojoExecutionException {
+        ConsolidationStrategyEnum strategy = getConsolidationStrategy();
+        List<FunctionDefinition> functions = FunctionConsolidator.consolidate(endpoints, strategy);
+        getLog().info(String.format("Generating %d functions for %d endpoints", functions.size(), endpoints.size()));
+        if (strategy != ConsolidationStrategyEnum.NONE) {
+            functions.forEach(function -> getLog().info("\t\t" + function));
+        }
+        checkRouteConflicts(endpoints, functions, strategy);
+        setAuthLevels(functions);
+
+        String functionTemplate = Paths.get(TEMPLATES_FOLDER, FUNCTIONS_FILE).toString();
+        for (FunctionDefinition function : functions) {
+            // set values in configuration and write it to file
+            String config = TemplateRegistry.render(functionTemplate, function);
+            writeConfigFile(config, Paths.get(function.getName(), FUNCTIONS_FILE).toString());
+        }
 
-        }));
+        if (KeepWarm.isEnabled(keepWarmSchedule)) {
+            // the timer invocations are forwarded to the handler and answered by the keep-warm servlet
+            Map<String, String> scheduleMap = new HashMap<>();
+            scheduleMap.put("schedule", Commons.escapeJson(keepWarmSchedule.trim()));
+            writeConfigFile(TemplateRegistry.render(Paths.get(TEMPLATES_FOLDER, KEEP_WARM_TEMPLATE).toString(), scheduleMap),
+                    Paths.get(KeepWarm.FUNCTION_NAME, FUNCTIONS_FILE).toString());
+        }
 
         // still copy host.json and local.settings.json
-        writeHostJson(baseDirectory);
-        Commons.writeConfigFile(getConfigTemplate(LOCAL_SETTINGS_FILE), baseDirectory.toString(), LOCAL_SETTINGS_FILE);
+        writeHostJson();
+        Map<String, Object> settingsMap = new HashMap<>();
+        settingsMap.put("runFromPackage", runFromPackage);
+        writeConfigFile(TemplateRegistry.render(Paths.get(TEMPLATES_FOLDER, LOCAL_SETTINGS_FILE).toString(), settingsMap),
+                LOCAL_SETTINGS_FILE);
+        return functions.size();
+    }
+
+    private ConsolidationStrategyEnum getConsolidationStrategy() {
+        try {
+            return ConsolidationStrategyEnum.valueOf(functionConsolidation.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            getLog().warn("Invalid function consolidation " + functionConsolidation + ". Valid values are `none`, " +
+                    "`class`, `prefix` and `proxy`. Will generate one function per endpoint");
+            return ConsolidationStrategyEnum.NONE;
+        }
+    }
+
+    private void setAuthLevels(List<FunctionDefinition> functions) {
+        // a function serving several endpoints requires the most restrictive level of all of them
+        AuthLevelEnum defaultLevel = parseAuthLevel(authLevel, "authLevel", AuthLevelEnum.ANONYMOUS);
+        Map<String, String> levels = functionAuthLevels != null ? functionAuthLevels : Collections.emptyMap();
+        for (FunctionDefinition function : functions) {
+            if (levels.containsKey(function.getName())) {
+                function.setAuthLevel(parseAuthLevel(levels.get(function.getName()), function.getName(), defaultLevel));
+                continue;
+            }
+            SortedSet<AuthLevelEnum> endpointLevels = new TreeSet<>();
+            for (RestEndpoint endpoint : function.getEndpoints()) {
+                endpointLevels.add(endpoint.getHintKeys().stream().filter(levels::containsKey).findFirst()
+                        .map(key -> parseAuthLevel(levels.get(key), key, defaultLevel)).orElse(defaultLevel));
+            }
+            function.setAuthLevel(endpointLevels.isEmpty() ? defaultLevel : endpointLevels.last());
+            if (endpointLevels.size() > 1) {
+                getLog().warn("Function " + function.getName() + " serves endpoints with the auth levels " +
+                        endpointLevels + ", all of them will require " + function.getAuthLevel());
+            }
+        }
+    }
+
+    private AuthLevelEnum parseAuthLevel(String level, String key, AuthLevelEnum defaultLevel) {
+        try {
+            return AuthLevelEnum.valueOf(String.valueOf(level).trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            getLog().warn("Invalid auth level " + level + " of " + key + ". Valid values are `anonymous`, `function` " +
+                    "and `admin`. Will use " + defaultLevel.name().toLowerCase(Locale.ROOT));
+            return defaultLevel;
+        }
     }
 
-    private void writeHostJson(Path baseDirectory) throws IOException {
+    private void checkRouteConflicts(List<RestEndpoint> endpoints, List<FunctionDefinition> functions,
+                                     ConsolidationStrategyEnum strategy) throws MojoExecutionException {
+        List<String> conflicts = FunctionConsolidator.findRouteConflicts(endpoints, functions);
+        if (conflicts.isEmpty()) {
+            return;
+        }
+        if (strategy == ConsolidationStrategyEnum.NONE) {
+            // kept as a warning, the configuration was generated like this before the check existed
+            conflicts.forEach(conflict -> getLog().warn("Route conflict: " + conflict));
+            return;
+        }
+        conflicts.forEach(conflict -> getLog().error("Route conflict: " + conflict));
+        throw new MojoExecutionException("The " + functionConsolidation + " function consolidation produced " +
+                conflicts.size() + " route conflicts");
+    }
+
+    private void writeHostJson() throws IOException {
         // creates a `host.json` file with the appropriate configuration
         String baseHostConfigFile = jarPackaging ? HOST_FILE_JAR : HOST_FILE_EXPLODED;
-        MustacheFactory mf = new DefaultMustacheFactory();
-        Mustache m = mf.compile(Paths.get(TEMPLATES_FOLDER, baseHostConfigFile).toString());
-        Map<String, String> javaPathMap = new HashMap<>();
-        javaPathMap.put("javaPath", Commons.getJavaPath());
+        Map<String, Object> javaPathMap = new HashMap<>();
+        javaPathMap.put("javaPath", runtimeLinked ? getLinkedJavaPath() : Commons.getJavaPath());
+        javaPathMap.put("classPath", Commons.escapeJson(getExplodedClassPath()));
+        javaPathMap.put("jvmArguments", getHandlerJvmArguments());
+        javaPathMap.put("maxConcurrentRequests", httpMaxConcurrentRequests);
+        javaPathMap.put("maxOutstandingRequests", httpMaxOutstandingRequests);
+        javaPathMap.put("dynamicThrottlesEnabled", httpDynamicThrottles != null ? httpDynamicThrottles.toString() : null);
+        if (functionTimeout != null && !functionTimeout.trim().isEmpty()) {
+            if (FUNCTION_TIMEOUT.matcher(functionTimeout.trim()).matches()) {
+                javaPathMap.put("functionTimeout", functionTimeout.trim());
+            } else {
+                getLog().warn("Invalid function timeout " + functionTimeout + ". Valid values are time spans like " +
+                        "`00:10:00` and `-1`. Will use the default timeout of the plan");
+            }
+        }
+        writeConfigFile(TemplateRegistry.render(Paths.get(TEMPLATES_FOLDER, baseHostConfigFile).toString(), javaPathMap),
+                HOST_FILE);
+    }
+
+    private String getExplodedClassPath() throws IOException {
+        String separator = useWindowsSeparator() ? ";" : ":";
+        if (isCdsClassPath()) {
+            // the archive dumped by the `azf-generate-cds` goal of a previous build needs jars in a fixed order
+            return CdsClassPath.getClassPath(Paths.get(targetFolder, "dependency"), separator);
+        }
+        return "classes" + separator + "dependency/*";
+    }
+
+    private boolean isCdsClassPath() {
+        return !jarPackaging && Files.exists(Paths.get(targetFolder, configFolder, CDS_ARCHIVE_FILE));
+    }
+
+    private String getLinkedJavaPath() {
+        // relative to the function app root, which is the working directory of the handler
+        return RUNTIME_FOLDER + "/bin/" + (useWindowsSeparator() ? "java.exe" : "java");
+    }
+
+    private boolean useWindowsSeparator() {
         boolean useWindowsSeparator = Commons.isWindowsOs();
         if (os != null) {
             if (!os.equals("windows") && !os.equals("linux")) {
@@ -126,41 +510,130 @@ public class AzfGenerateConfigMojo extends AbstractMojo {
             }
             useWindowsSeparator = os.equals("windows");
         }
-        javaPathMap.put("osSeparator", useWindowsSeparator ? ";" : ":");
-        StringWriter writer = new StringWriter();
-        m.execute(writer, javaPathMap).flush();
-        Commons.writeConfigFile(writer.toString(), baseDirectory.toString(), HOST_FILE);
+        return useWindowsSeparator;
+    }
+
+    private LaunchProfileEnum getLaunchProfile() {
+        try {
+            return LaunchProfileEnum.valueOf(launchProfile.replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            getLog().warn("Invalid launch profile " + launchProfile + ". Valid values are `default`, `cold-start`, " +
+                    "`throughput` and `low-memory`. Will use the default profile");
+            return LaunchProfileEnum.DEFAULT;
+        }
+    }
+
+    private List<String> getHandlerJvmArguments() {
+        // JVM arguments placed before the class path, already escaped for a JSON string
+        List<String> handlerJvmArguments = new ArrayList<>(getLaunchProfile().getJvmArguments());
+        if (Files.exists(Paths.get(targetFolder, configFolder, CDS_ARCHIVE_FILE))) {
+            // archive dumped by the `azf-generate-cds` goal of a previous build
+            handlerJvmArguments.add(CDS_ARCHIVE_ARGUMENT + CDS_ARCHIVE_FILE);
+        }
+        if (jvmArguments != null) {
+            handlerJvmArguments = JvmArguments.merge(handlerJvmArguments, jvmArguments);
+        }
+        getLog().info("Custom handler JVM arguments: " + handlerJvmArguments);
+        return handlerJvmArguments.stream().map(Commons::escapeJson).collect(Collectors.toList());
     }
 
     private void copyCode() throws IOException {
+        stager = new CodeStager(getStagingStrategy());
         if (jarPackaging) {
-            Path targetFile = Paths.get(targetFolder, configFolder, "handler.jar");
             Path sourceFile = Paths.get(targetFolder, project.getBuild().getFinalName() + ".jar");
-            Files.copy(sourceFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
+            writer.submit(() -> copyFile(sourceFile, "handler.jar"));
         } else {
-            FileUtils.copyDirectoryStructure(Paths.get(targetFolder, "classes").toFile(), Paths.get(targetFolder, configFolder, "classes").toFile());
-            FileUtils.copyDirectoryStructure(Paths.get(targetFolder, "dependency").toFile(), Paths.get(targetFolder, configFolder, "dependency").toFile());
+            copyDirectory(Paths.get(targetFolder, "classes"), "classes");
+            copyDirectory(Paths.get(targetFolder, "dependency"), "dependency");
+            if (isCdsClassPath()) {
+                writer.submit(this::writeClassesJar);
+            }
         }
     }
 
+    private void writeClassesJar() throws IOException {
+        // packed from the build output, since the classes are staged concurrently
+        Path jarFile = Paths.get(targetFolder, configFolder, CdsClassPath.CLASSES_JAR);
+        if (CdsClassPath.writeClassesJar(Paths.get(targetFolder, "classes"), jarFile)) {
+            metrics.add(WRITTEN_FILES, 1);
+            metrics.add(STAGED_BYTES, Files.size(jarFile));
+        } else {
+            metrics.add(UNCHANGED_FILES, 1);
+        }
+        manifest.track(CdsClassPath.CLASSES_JAR, Commons.hash(jarFile));
+    }
 
-    private void generateDockerfile() throws IOException {
-        MustacheFactory mf = new DefaultMustacheFactory();
-        Mustache m = mf.compile(Paths.get(TEMPLATES_FOLDER, DOCKERFILE).toString());
-        Map<String, String> javaVersionMap = new HashMap<>();
-        javaVersionMap.put("javaVersion", javaVersion != null ? javaVersion : Commons.getJavaVersion(project));
-        StringWriter writer = new StringWriter();
-        m.execute(writer, javaVersionMap).flush();
-        Commons.writeConfigFile(writer.toString(), Paths.get(targetFolder, configFolder).toString(), DOCKERFILE);
+    private void copyDirectory(Path sourceFolder, String targetFolderName) throws IOException {
+        if (!Files.isDirectory(sourceFolder)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(sourceFolder)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String relativePath = Paths.get(targetFolderName, sourceFolder.relativize(file).toString()).toString();
+            writer.submit(() -> copyFile(file, relativePath));
+        }
     }
 
-    private static String getConfigTemplate(String fileName) throws IOException {
-        // reads the file `fileName` in the templates folder and returns it as a string
-        String filePath = Paths.get("/", TEMPLATES_FOLDER, fileName).toString();
-        try (InputStream in = AzfGenerateConfigMojo.class.getResourceAsStream(filePath)) {
-            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    private StagingStrategyEnum getStagingStrategy() {
+        try {
+            return StagingStrategyEnum.valueOf(stagingStrategy.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            getLog().warn("Invalid staging strategy " + stagingStrategy + ". Valid values are `copy`, `hardlink` " +
+                    "and `symlink`. Will copy the files");
+            return StagingStrategyEnum.COPY;
+        }
+    }
+
+    private void copyFile(Path sourceFile, String relativePath) throws IOException {
+        // stages the file only if it changed since the previous build, judging by its size and modification time
+        Path targetFile = Paths.get(targetFolder, configFolder, relativePath);
+        BasicFileAttributes attributes = Files.readAttributes(sourceFile, BasicFileAttributes.class);
+        manifest.track(relativePath, attributes.size() + "-" + attributes.lastModifiedTime().toMillis());
+        if (stager.stage(sourceFile, targetFile)) {
+            metrics.add(WRITTEN_FILES, 1);
+            metrics.add(STAGED_BYTES, attributes.size());
+        } else {
+            metrics.add(UNCHANGED_FILES, 1);
         }
+    }
 
+    private void writeConfigFile(String config, String relativePath) throws IOException {
+        // writes the file only if its content differs from the one written by the previous build
+        Path targetFile = Paths.get(targetFolder, configFolder, relativePath);
+        byte[] bytes = config.getBytes(StandardCharsets.UTF_8);
+        if (manifest.record(relativePath, Commons.hash(bytes))) {
+            writer.write(targetFile, bytes);
+            metrics.add(WRITTEN_FILES, 1);
+            metrics.add(RENDERED_BYTES, bytes.length);
+        } else {
+            metrics.add(UNCHANGED_FILES, 1);
+        }
+    }
+
+
+    private void generateDockerfile() throws IOException {
+        boolean cdsArchive = Files.exists(Paths.get(targetFolder, configFolder, CDS_ARCHIVE_FILE));
+        writeConfigFile(renderDockerfile(javaVersion != null ? javaVersion : Commons.getJavaVersion(project),
+                runtimeLinked, jarPackaging, cdsArchive, cdsArchive && isCdsClassPath()), DOCKERFILE);
+        writeConfigFile(TemplateRegistry.read(Paths.get(TEMPLATES_FOLDER, DOCKERIGNORE_TEMPLATE).toString()),
+                DOCKERIGNORE_FILE);
+    }
+
+    static String renderDockerfile(String javaVersion, boolean linkedRuntime, boolean jarPackaging, boolean cdsArchive,
+                                   boolean cdsClassesJar) throws IOException {
+        // one layer per part of the function app, see the template
+        Map<String, Object> dockerfileMap = new HashMap<>();
+        dockerfileMap.put("javaVersion", javaVersion);
+        dockerfileMap.put("linkedRuntime", linkedRuntime);
+        dockerfileMap.put("jarPackaging", jarPackaging);
+        if (cdsArchive) {
+            dockerfileMap.put("cdsArchive", CDS_ARCHIVE_FILE);
+            dockerfileMap.put("cdsClassesJar", cdsClassesJar ? CdsClassPath.CLASSES_JAR : null);
+        }
+        return TemplateRegistry.render(Paths.get(TEMPLATES_FOLDER, DOCKERFILE).toString(), dockerfileMap);
     }
 
     private void createDirectoryStructure() throws IOException {
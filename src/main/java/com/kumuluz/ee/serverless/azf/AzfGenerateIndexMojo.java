@@ -0,0 +1,94 @@
+package com.kumuluz.ee.serverless.azf;
+
+import com.kumuluz.ee.serverless.common.ConcurrencyLimits;
+import com.kumuluz.ee.serverless.common.KeepWarm;
+import com.kumuluz.ee.serverless.common.ProjectParser;
+import com.kumuluz.ee.serverless.common.ResourceIndex;
+import com.kumuluz.ee.serverless.common.RouteTable;
+import com.kumuluz.ee.serverless.common.pojo.IndexedClass;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Writes the JAX-RS resource index, and the route table, the concurrency limits and the keep-warm servlet if enabled,
+ * into the compiled classes right after compilation, so that they are packaged into the jar as well.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+@Mojo(name = "azf-generate-index", defaultPhase = LifecyclePhase.PROCESS_CLASSES, threadSafe = true,
+        requiresDependencyResolution = ResolutionScope.RUNTIME)
+public class AzfGenerateIndexMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    protected MavenProject project;
+
+    @Parameter(property = "scanThreads", required = false)
+    private Integer scanThreads; // if not set, use one thread per available processor
+
+    @Parameter(property = "scanDependencies", required = false, defaultValue = "false")
+    private boolean scanDependencies; // also scan the runtime dependencies for JAX-RS classes in the project's packages
+
+    @Parameter(property = "generateRouteTable", required = false, defaultValue = "false")
+    private boolean generateRouteTable; // write the route trie and the filter that labels requests with their endpoint before Jersey matches them
+
+    @Parameter(required = false)
+    private Map<String, String> endpointConcurrency; // concurrent requests per resource method or class, e.g. `<Reports.export>2</Reports.export>`
+
+    @Parameter(property = "keepWarmSchedule", required = false)
+    private String keepWarmSchedule; // if set, write the servlet that answers the invocations of the keep-warm timer function
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        try {
+            Path classesFolder = Paths.get(project.getBuild().getOutputDirectory());
+            Collection<IndexedClass> classes = ProjectParser.getClasses(project,
+                    scanThreads != null ? scanThreads : Runtime.getRuntime().availableProcessors(), scanDependencies);
+            if (generateRouteTable) {
+                getLog().info(RouteTable.write(classesFolder, classes) ? "Route table written to " + RouteTable.TABLE_FILE
+                        : "Route table is up to date");
+            } else {
+                RouteTable.remove(classesFolder);
+            }
+            List<String> filters = new ArrayList<>();
+            if (generateRouteTable) {
+                filters.add(RouteTable.FILTER_CLASS);
+            }
+            SortedMap<String, Integer> limits = ConcurrencyLimits.resolve(classes, endpointConcurrency);
+            if (!limits.isEmpty()) {
+                getLog().info(ConcurrencyLimits.write(classesFolder, limits) ? "Concurrency limits of " + limits.size()
+                        + " endpoints written to " + ConcurrencyLimits.TABLE_FILE : "Concurrency limits are up to date");
+                filters.add(ConcurrencyLimits.FILTER_CLASS);
+            } else {
+                ConcurrencyLimits.remove(classesFolder);
+            }
+            if (KeepWarm.isEnabled(keepWarmSchedule)) {
+                getLog().info(KeepWarm.write(classesFolder) ? "Keep-warm servlet written"
+                        : "Keep-warm servlet is up to date");
+            } else {
+                KeepWarm.remove(classesFolder);
+            }
+            boolean written = ResourceIndex.write(classesFolder, classes, filters);
+            getLog().info(written ? "JAX-RS resource index written to " + ResourceIndex.INDEX_FILE
+                    : "JAX-RS resource index is up to date");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to generate the JAX-RS resource index", e);
+        }
+    }
+
+}
@@ -0,0 +1,301 @@
+package com.kumuluz.ee.serverless.azf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kumuluz.ee.serverless.common.LatencyHistogram;
+import com.kumuluz.ee.serverless.common.ProjectParser;
+import com.kumuluz.ee.serverless.common.TemplateRegistry;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Sends requests to the endpoints of the project at a constant rate and reports the latency percentiles, the
+ * throughput and the error rate of each endpoint. Requests are scheduled independently of the responses and their
+ * latency is measured from the time they should have been sent, so a stalled server is not hidden by the load
+ * generator slowing down (coordinated omission).
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+@Mojo(name = "azf-loadtest")
+public class AzfLoadTestMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    protected MavenProject project;
+
+    @Parameter(defaultValue = "${project.build.directory}")
+    private String targetFolder;
+
+    @Parameter(property = "configFolder", required = false, defaultValue = "azf-config")
+    private String configFolder;
+
+    @Parameter(property = "loadTestUrl", required = false)
+    private String loadTestUrl; // if not set, start the handler from the configuration folder and test it
+
+    @Parameter(property = "loadTestRate", required = false, defaultValue = "100")
+    private int loadTestRate; // requests per second, spread evenly over the endpoints
+
+    @Parameter(property = "loadTestDuration", required = false, defaultValue = "30")
+    private int loadTestDuration; // seconds of measured load
+
+    @Parameter(property = "loadTestWarmup", required = false, defaultValue = "5")
+    private int loadTestWarmup; // seconds of load before the measurement, not included in the results
+
+    @Parameter(property = "loadTestConcurrency", required = false, defaultValue = "256")
+    private int loadTestConcurrency; // maximum requests in flight
+
+    @Parameter(property = "loadTestTimeout", required = false, defaultValue = "30")
+    private int loadTestTimeout; // seconds, also used to wait for a locally started handler
+
+    private static final String REPORT_FILE = "azf-loadtest.json";
+    private static final String HTML_REPORT_FILE = "azf-loadtest.html";
+    private static final String HANDLER_LOG_FILE = "azf-loadtest-handler.log";
+    private static final String HTML_TEMPLATE = "loadtest_report.html";
+    private static final String TOTAL = "Total";
+
+    private final AtomicLong lastCompletion = new AtomicLong();
+    private long measurementStart;
+
+    private static class EndpointResults {
+        final String name;
+        final LatencyHistogram latency = new LatencyHistogram(); // from the intended send time
+        final LatencyHistogram serviceTime = new LatencyHistogram(); // from the actual send time
+        final AtomicLong errors = new AtomicLong();
+        final Map<String, AtomicLong> statuses = new ConcurrentHashMap<>();
+
+        EndpointResults(String name) {
+            this.name = name;
+        }
+
+        void record(long latencyMicros, long serviceTimeMicros, String status, boolean error) {
+            latency.record(latencyMicros);
+            serviceTime.record(serviceTimeMicros);
+            statuses.computeIfAbsent(status, key -> new AtomicLong()).incrementAndGet();
+            if (error) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        Process handler = null;
+        try {
+            List<RestEndpoint> endpoints = ProjectParser.getEndpoints(project).stream()
+                    .filter(RestEndpoint::isSafeToCall)
+                    .collect(Collectors.toList());
+            if (endpoints.isEmpty()) {
+                throw new MojoExecutionException("No GET or HEAD endpoint without path parameters to load test");
+            }
+
+            String baseUrl = loadTestUrl;
+            if (baseUrl == null) {
+                int port = HandlerLauncher.getFreePort();
+                HandlerLauncher launcher = new HandlerLauncher(Paths.get(targetFolder, configFolder));
+                File log = Paths.get(targetFolder, HANDLER_LOG_FILE).toFile();
+                Files.deleteIfExists(log.toPath());
+                getLog().info("Starting the handler: " + String.join(" ", launcher.getCommand()));
+                handler = launcher.start(port, log);
+                baseUrl = "http://localhost:" + port;
+                if (!new EndpointWarmer(baseUrl, 1, getLog()).waitUntilReady(endpoints.get(0), loadTestTimeout)) {
+                    throw new MojoExecutionException("The handler did not start within " + loadTestTimeout +
+                            " seconds, see " + log);
+                }
+            }
+            baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+
+            getLog().info(String.format("Sending %d requests/s to %d endpoints of %s for %d s (+%d s warm-up)",
+                    loadTestRate, endpoints.size(), baseUrl, loadTestDuration, loadTestWarmup));
+            Map<String, EndpointResults> results = runLoad(baseUrl, endpoints);
+            writeReports(baseUrl, results);
+
+        } catch (IOException | IllegalStateException e) {
+            throw new MojoExecutionException("Failed to run the load test", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while running the load test", e);
+        } finally {
+            if (handler != null) {
+                try {
+                    HandlerLauncher.stop(handler);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private Map<String, EndpointResults> runLoad(String baseUrl, List<RestEndpoint> endpoints)
+            throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(loadTestTimeout))
+                .build();
+        List<HttpRequest> requests = new ArrayList<>();
+        Map<String, EndpointResults> results = new LinkedHashMap<>();
+        EndpointResults total = new EndpointResults(TOTAL);
+        List<EndpointResults> endpointResults = new ArrayList<>();
+        for (RestEndpoint endpoint : endpoints) {
+            requests.add(HttpRequest.newBuilder(URI.create(baseUrl + endpoint.getCompleteURL()))
+                    .timeout(Duration.ofSeconds(loadTestTimeout))
+                    .method(endpoint.getRestMethodEnum().name(), HttpRequest.BodyPublishers.noBody())
+                    .build());
+            EndpointResults endpointResult = new EndpointResults(
+                    endpoint.getRestMethodEnum().name() + " /" + endpoint.getCompleteURL());
+            endpointResults.add(endpointResult);
+            results.put(endpointResult.name, endpointResult);
+        }
+        results.put(TOTAL, total);
+
+        Semaphore inFlight = new Semaphore(Math.max(1, loadTestConcurrency));
+        long interval = TimeUnit.SECONDS.toNanos(1) / Math.max(1, loadTestRate);
+        long start = System.nanoTime();
+        measurementStart = start + TimeUnit.SECONDS.toNanos(loadTestWarmup);
+        long end = measurementStart + TimeUnit.SECONDS.toNanos(loadTestDuration);
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // when the limit is reached the schedule falls behind, but the latency still counts from the intended
+            // send time, so the time spent waiting here shows up in the results
+            inFlight.acquire();
+            int endpointIndex = (int) (i % requests.size());
+            boolean measured = intended >= measurementStart;
+            long sent = System.nanoTime();
+            client.sendAsync(requests.get(endpointIndex), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        long completed = System.nanoTime();
+                        inFlight.release();
+                        if (!measured) {
+                            return;
+                        }
+                        lastCompletion.accumulateAndGet(completed, Math::max);
+                        long latency = TimeUnit.NANOSECONDS.toMicros(completed - intended);
+                        long serviceTime = TimeUnit.NANOSECONDS.toMicros(completed - sent);
+                        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                        String status = response != null ? String.valueOf(response.statusCode())
+                                : cause.getClass().getSimpleName();
+                        boolean error = response == null || response.statusCode() >= 400;
+                        endpointResults.get(endpointIndex).record(latency, serviceTime, status, error);
+                        total.record(latency, serviceTime, status, error);
+                    });
+        }
+
+        if (!inFlight.tryAcquire(Math.max(1, loadTestConcurrency), loadTestTimeout, TimeUnit.SECONDS)) {
+            getLog().warn("Some requests did not complete within " + loadTestTimeout + " seconds after the test");
+        }
+        return results;
+    }
+
+    private void writeReports(String baseUrl, Map<String, EndpointResults> results) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode report = mapper.createObjectNode();
+        report.put("target", baseUrl);
+        report.put("rate", loadTestRate);
+        report.put("durationSeconds", loadTestDuration);
+        report.put("warmupSeconds", loadTestWarmup);
+        report.put("concurrency", loadTestConcurrency);
+        // the throughput is based on the time until the last response, which is later than planned when the target
+        // could not keep up
+        double seconds = Math.max(TimeUnit.SECONDS.toNanos(loadTestDuration), lastCompletion.get() - measurementStart) / 1e9;
+        report.put("elapsedSeconds", seconds);
+        ObjectNode endpointsNode = report.putObject("endpoints");
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (EndpointResults result : results.values()) {
+            ObjectNode node = result.name.equals(TOTAL) ? report.putObject("total") : endpointsNode.putObject(result.name);
+            long requests = result.latency.getCount();
+            double throughput = requests / seconds;
+            node.put("requests", requests);
+            node.put("errors", result.errors.get());
+            node.put("errorRate", requests > 0 ? (double) result.errors.get() / requests : 0);
+            node.put("throughput", throughput);
+            ObjectNode statusesNode = node.putObject("statuses");
+            new TreeMap<>(result.statuses).forEach((status, count) -> statusesNode.put(status, count.get()));
+            ObjectNode latencyNode = node.putObject("latencyMillis");
+            latencyNode.put("p50", toMillis(result.latency.getPercentile(50)));
+            latencyNode.put("p90", toMillis(result.latency.getPercentile(90)));
+            latencyNode.put("p99", toMillis(result.latency.getPercentile(99)));
+            latencyNode.put("p99.9", toMillis(result.latency.getPercentile(99.9)));
+            latencyNode.put("max", toMillis(result.latency.getMax()));
+            latencyNode.put("mean", result.latency.getMean() / 1_000);
+            ObjectNode serviceTimeNode = node.putObject("serviceTimeMillis");
+            serviceTimeNode.put("p50", toMillis(result.serviceTime.getPercentile(50)));
+            serviceTimeNode.put("p99", toMillis(result.serviceTime.getPercentile(99)));
+
+            Map<String, Object> row = new HashMap<>();
+            row.put("name", result.name);
+            row.put("requests", requests);
+            row.put("errors", result.errors.get());
+            row.put("throughput", String.format(Locale.ROOT, "%.1f", throughput));
+            row.put("p50", format(result.latency.getPercentile(50)));
+            row.put("p90", format(result.latency.getPercentile(90)));
+            row.put("p99", format(result.latency.getPercentile(99)));
+            row.put("p999", format(result.latency.getPercentile(99.9)));
+            row.put("max", format(result.latency.getMax()));
+            row.put("serviceP50", format(result.serviceTime.getPercentile(50)));
+            row.put("serviceP99", format(result.serviceTime.getPercentile(99)));
+            rows.add(row);
+
+            getLog().info(String.format("\t\t%s: %d requests, %d errors, %.1f req/s, p50 %s ms, p99 %s ms, " +
+                            "p99.9 %s ms, max %s ms", result.name, requests, result.errors.get(), throughput,
+                    row.get("p50"), row.get("p99"), row.get("p999"), row.get("max")));
+        }
+
+        Path reportFile = Paths.get(targetFolder, REPORT_FILE);
+        mapper.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+
+        Map<String, Object> scope = new HashMap<>();
+        scope.put("target", baseUrl);
+        scope.put("rate", loadTestRate);
+        scope.put("duration", loadTestDuration);
+        scope.put("warmup", loadTestWarmup);
+        scope.put("concurrency", loadTestConcurrency);
+        scope.put("endpoints", rows);
+        Path htmlReportFile = Paths.get(targetFolder, HTML_REPORT_FILE);
+        Files.write(htmlReportFile, TemplateRegistry.render(
+                Paths.get(AzfGenerateConfigMojo.TEMPLATES_FOLDER, HTML_TEMPLATE).toString(), scope)
+                .getBytes(StandardCharsets.UTF_8));
+        getLog().info("Load test reports written to " + reportFile + " and " + htmlReportFile);
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1_000.0;
+    }
+
+    private static String format(long micros) {
+        return String.format(Locale.ROOT, "%.2f", toMillis(micros));
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.kumuluz.ee.serverless.azf;
+
+import com.kumuluz.ee.serverless.common.enums.RestMethodEnum;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Waits until the custom handler of a freshly deployed function app answers and then calls its safe endpoints
+ * concurrently, so that the resources are initialized before the first real request arrives.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class EndpointWarmer {
+
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int READ_TIMEOUT_MILLIS = 60_000;
+
+    private final String baseUrl;
+    private final int parallelism;
+    private final Log log;
+
+    public EndpointWarmer(String baseUrl, int parallelism, Log log) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.parallelism = Math.max(1, parallelism);
+        this.log = log;
+    }
+
+    /**
+     * Returns the GET and HEAD endpoints without path parameters, which can be called without knowing any data.
+     */
+    public static List<RestEndpoint> getSafeEndpoints(List<RestEndpoint> endpoints) {
+        return endpoints.stream().filter(RestEndpoint::isSafeToCall).collect(Collectors.toList());
+    }
+
+    /**
+     * Polls the given endpoint with exponential backoff until it answers with a 2xx or 3xx status. The site root is
+     * not used, since with an empty route prefix it is answered by the Functions host, or by the instance running the
+     * previous code, rather than by the new handler. Returns false if the app is not ready within the timeout.
+     */
+    public boolean waitUntilReady(RestEndpoint probe, long timeoutSeconds) throws InterruptedException {
+        return waitUntilReady(probe, timeoutSeconds, () -> true);
+    }
+
+    /**
+     * Polls the given endpoint like {@link #waitUntilReady(RestEndpoint, long)}, but stops as soon as the given
+     * condition no longer holds, e.g. when a local handler process exited.
+     */
+    public boolean waitUntilReady(RestEndpoint probe, long timeoutSeconds, BooleanSupplier keepWaiting)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        int attempts = 0;
+        while (System.nanoTime() < deadline && keepWaiting.getAsBoolean()) {
+            attempts++;
+            int status = call(probe.getRestMethodEnum(), probe.getCompleteURL());
+            if (status >= 200 && status < 400) {
+                log.info(String.format("Function app ready after %d ms (%d attempts, %s /%s answered %d)",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), attempts,
+                        probe.getRestMethodEnum().name(), probe.getCompleteURL(), status));
+                return true;
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            TimeUnit.MILLISECONDS.sleep(Math.max(0, Math.min(backoff, remaining)));
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+        return false;
+    }
+
+    /**
+     * Calls the given safe endpoints once and logs the latency of the first response.
+     */
+    public void warmUp(List<RestEndpoint> safeEndpoints) throws InterruptedException {
+        log.info(String.format("Warming up %d endpoints with %d parallel requests", safeEndpoints.size(), parallelism));
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (RestEndpoint endpoint : safeEndpoints) {
+                results.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    int status = call(endpoint.getRestMethodEnum(), endpoint.getCompleteURL());
+                    long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    return String.format("%6d ms  %s  %s /%s", latency, status > 0 ? String.valueOf(status) : "ERR",
+                            endpoint.getRestMethodEnum().name(), endpoint.getCompleteURL());
+                }));
+            }
+            for (Future<String> result : results) {
+                try {
+                    log.info("\t\t" + result.get());
+                } catch (ExecutionException e) {
+                    log.warn("Warm-up request failed", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int call(RestMethodEnum method, String path) {
+        // returns the status code, or -1 if the app could not be reached
+        try {
+            HttpURLConnection http = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            http.setRequestMethod(method.name());
+            http.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            http.setReadTimeout(READ_TIMEOUT_MILLIS);
+            int status = http.getResponseCode();
+            try (InputStream in = status < 400 ? http.getInputStream() : http.getErrorStream()) {
+                if (in != null) {
+                    in.readAllBytes(); // the latency includes the whole response
+                }
+            }
+            http.disconnect();
+            return status;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.kumuluz.ee.serverless.azf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Starts the custom handler of a configuration folder the same way the Functions host does: the executable and the
+ * arguments are taken from `host.json`, the handler runs in the configuration folder and the port it has to listen
+ * on is passed in `FUNCTIONS_CUSTOMHANDLER_PORT`.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class HandlerLauncher {
+
+    public static final String PORT_ENV_VAR = "FUNCTIONS_CUSTOMHANDLER_PORT";
+    private static final String KUMULUZEE_PORT_ENV_VAR = "KUMULUZEE_SERVER_HTTP_PORT";
+    private static final Pattern ENV_VAR_REFERENCE = Pattern.compile("%([^%]+)%");
+    private static final List<String> CLASS_PATH_OPTIONS = Arrays.asList("-cp", "-classpath", "--class-path");
+
+    private final Path configFolder;
+    private final List<String> command = new ArrayList<>();
+
+    public HandlerLauncher(Path configFolder) throws IOException {
+        this.configFolder = configFolder;
+        Path hostFile = configFolder.resolve(AzfGenerateConfigMojo.HOST_FILE);
+        if (!Files.exists(hostFile)) {
+            throw new IOException("Configuration not found in " + configFolder +
+                    ", run the `azf-generate-config` goal first");
+        }
+
+        JsonNode description = new ObjectMapper().readTree(hostFile.toFile()).path("customHandler").path("description");
+        if (!description.path("defaultExecutablePath").isTextual() || !description.path("arguments").isArray()) {
+            throw new IOException("No custom handler description found in " + hostFile);
+        }
+        String executable = expandEnvVars(description.path("defaultExecutablePath").asText());
+        if (executable.contains("/") && !Paths.get(executable).isAbsolute()) {
+            // e.g. a linked runtime, relative to the function app root
+            executable = configFolder.resolve(executable).toAbsolutePath().toString();
+        }
+        command.add(executable);
+        description.path("arguments").forEach(argument -> command.add(expandEnvVars(argument.asText())));
+    }
+
+    public List<String> getCommand() {
+        return command;
+    }
+
+    /**
+     * Replaces the executable of `host.json`, e.g. to start the handler with the JVM of a Docker image.
+     */
+    public void setExecutable(String executable) {
+        command.set(0, executable);
+    }
+
+    /**
+     * Adds an argument for the JVM, before the arguments of `host.json`.
+     */
+    public void addJvmArgument(String argument) {
+        command.add(1, argument);
+    }
+
+    /**
+     * Replaces the value of the class path argument of `host.json`, if there is one.
+     */
+    public void setClassPath(String classPath) {
+        int index = getClassPathIndex(command);
+        if (index >= 0) {
+            command.set(index, classPath);
+        }
+    }
+
+    /**
+     * Returns the index of the value of the class path argument in the given arguments, or -1 if there is none.
+     */
+    public static int getClassPathIndex(List<String> arguments) {
+        for (int i = 0; i < arguments.size() - 1; i++) {
+            if (CLASS_PATH_OPTIONS.contains(arguments.get(i))) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the arguments of `host.json` that start with the given prefix.
+     */
+    public void removeArguments(String prefix) {
+        command.subList(1, command.size()).removeIf(argument -> argument.startsWith(prefix));
+    }
+
+    public Process start(int port, File log) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command)
+                .directory(configFolder.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log));
+        processBuilder.environment().put(PORT_ENV_VAR, String.valueOf(port));
+        // KumuluzEE does not read the port of the Functions host on its own
+        processBuilder.environment().put(KUMULUZEE_PORT_ENV_VAR, String.valueOf(port));
+        return processBuilder.start();
+    }
+
+    public static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    /**
+     * Returns the resident set size of the process in kB, or -1 where it cannot be read (only Linux is supported).
+     */
+    public static long getRssKb(Process process) {
+        Path status = Paths.get("/proc", String.valueOf(process.pid()), "status");
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not available on this platform
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of classes loaded by the process, as reported by `jcmd`, or -1 if it cannot be attached to.
+     */
+    public long getLoadedClasses(Process process) {
+        try {
+            Process jcmd = new ProcessBuilder(getJcmdPath(), String.valueOf(process.pid()), "VM.classloader_stats")
+                    .redirectErrorStream(true)
+                    .start();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (InputStream in = jcmd.getInputStream()) {
+                in.transferTo(output);
+            }
+            if (!jcmd.waitFor(30, TimeUnit.SECONDS) || jcmd.exitValue() != 0) {
+                return -1;
+            }
+            // the summary line reads `Total = <class loaders> <classes> <chunk size> <block size>`
+            for (String line : output.toString().split("\\R")) {
+                if (line.startsWith("Total =")) {
+                    return Long.parseLong(line.substring("Total =".length()).trim().split("\\s+")[1]);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // the JVM cannot be attached to, e.g. when it is not a HotSpot JVM
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return -1;
+    }
+
+    private String getJcmdPath() {
+        // prefer the jcmd of the JVM running the handler, attaching across versions is not supported
+        Path executable = Paths.get(command.get(0));
+        Path jcmd = executable.resolveSibling(executable.getFileName().toString().replace("java", "jcmd"));
+        if (Files.isExecutable(jcmd)) {
+            return jcmd.toString();
+        }
+        return Paths.get(System.getProperty("java.home"), "bin", "jcmd").toString();
+    }
+
+    public static int getFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String expandEnvVars(String value) {
+        // the Functions host expands the `%NAME%` references in the handler description
+        Matcher matcher = ENV_VAR_REFERENCE.matcher(value);
+        StringBuffer expanded = new StringBuffer();
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            String replacement = System.getenv(name);
+            if (replacement == null && name.equals("JAVA_HOME")) {
+                replacement = System.getProperty("java.home");
+            }
+            matcher.appendReplacement(expanded, Matcher.quoteReplacement(replacement != null ? replacement : matcher.group()));
+        }
+        matcher.appendTail(expanded);
+        return expanded.toString();
+    }
+
+}
@@ -0,0 +1,470 @@
+package com.kumuluz.ee.serverless.azf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Minimal client for the REST API of the Kudu (SCM) site of a function app. All the requests share one HTTP client,
+ * so the connection is kept alive between them, and transient failures are retried with a jittered backoff. Streamed
+ * request bodies are produced on the client's own threads, which are stopped when the client is closed.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class KuduClient implements Closeable {
+
+    public static final String WWWROOT = "site/wwwroot/";
+
+    private static final int UPLOAD_CHUNK_SIZE = 64 * 1_024;
+    private static final long INITIAL_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final long MAX_POLL_INTERVAL_MILLIS = 10_000;
+    private static final Set<Integer> TRANSIENT_STATUSES = Set.of(408, 429, 500, 502, 503, 504);
+    // statuses after which a POST is known not to have been processed, a 500 may come after the deployment started
+    private static final Set<Integer> NOT_PROCESSED_STATUSES = Set.of(408, 429, 502, 503, 504);
+
+    private static final int DEPLOYMENT_SUCCESS = 4; // value of the `status` field of a successful Kudu deployment
+
+    private final String baseUrl;
+    private final String encodedCredentials;
+    private final Duration requestTimeout;
+    private final int retries;
+    private final Log log;
+    private final HttpClient client;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong uploadedBytes = new AtomicLong(); // of the successful uploads
+    // produce the streamed request bodies; a producer blocks on the pipe for the whole upload, so it gets a thread of
+    // its own instead of one of a shared pool
+    private final ExecutorService bodyProducers = Executors.newCachedThreadPool(new BodyProducerThreadFactory());
+
+    @FunctionalInterface
+    public interface BodyWriter {
+        void write(OutputStream output) throws IOException;
+    }
+
+    public KuduClient(String baseUrl, String user, String password, Duration connectTimeout, Duration requestTimeout,
+                      int retries, Log log) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.encodedCredentials = Base64.getEncoder().encodeToString(
+                String.format("%s:%s", user, password).getBytes(StandardCharsets.UTF_8)
+        );
+        this.requestTimeout = requestTimeout;
+        this.retries = Math.max(0, retries);
+        this.log = log;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    public HttpResponse<String> upload(String method, String path, Path file) throws IOException {
+        // sends the file with a fixed length body
+        long size = Files.size(file);
+        AtomicLong start = new AtomicLong();
+        HttpResponse<String> response = sendWithRetry(() -> {
+            start.set(System.nanoTime()); // the throughput is measured on the last attempt
+            return request(method, path)
+                    .header("Content-Type", "application/zip")
+                    .method(method, ofFile(file))
+                    .build();
+        });
+        logThroughput(size, start.get());
+        return response;
+    }
+
+    public HttpResponse<String> send(String method, String path, BodyWriter body) throws IOException {
+        // sends the body in chunks while it is being produced, so it never has to be held in memory or on disk; the
+        // body is produced again on every attempt
+        AtomicLong size = new AtomicLong();
+        AtomicReference<StreamingBody> current = new AtomicReference<>();
+        AtomicLong start = new AtomicLong();
+        HttpResponse<String> response;
+        try {
+            response = sendWithRetry(() -> {
+                StreamingBody streamingBody = new StreamingBody(body, size, bodyProducers);
+                StreamingBody previous = current.getAndSet(streamingBody);
+                if (previous != null) {
+                    previous.close();
+                }
+                start.set(System.nanoTime());
+                return request(method, path)
+                        .header("Content-Type", "application/zip")
+                        .method(method, HttpRequest.BodyPublishers.ofInputStream(streamingBody::start))
+                        .build();
+            });
+        } finally {
+            if (current.get() != null) {
+                current.get().close();
+            }
+        }
+        if (response.statusCode() / 100 == 2) {
+            // a failed body writer aborts the request, this only reports a failure the body stream did not
+            current.get().checkProduced();
+            logThroughput(size.get(), start.get());
+        }
+        return response;
+    }
+
+    public byte[] downloadFile(String filePath) throws IOException {
+        // returns the content of a file in the function app, or null if the file does not exist
+        HttpResponse<byte[]> response = sendWithRetry(() -> request("GET", "/api/vfs/" + encodePath(filePath))
+                .GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+            return null;
+        } else if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+            throw new IOException(String.format("Could not download %s: %d", filePath, response.statusCode()));
+        }
+        return response.body();
+    }
+
+    /**
+     * Returns the settings of the SCM site, which include the app settings of the function app, or null if they
+     * could not be read.
+     */
+    public Map<String, String> getSettings() throws IOException {
+        HttpResponse<String> response = sendWithRetry(() -> request("GET", "/api/settings").GET().build());
+        if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+            return null;
+        }
+        JsonNode settings = mapper.readTree(response.body());
+        Map<String, String> values = new TreeMap<>();
+        settings.fields().forEachRemaining(field -> values.put(field.getKey(), field.getValue().asText()));
+        return values;
+    }
+
+    public void deleteFile(String filePath) throws IOException {
+        int status = sendWithRetry(() -> request("DELETE", "/api/vfs/" + encodePath(filePath))
+                .header("If-Match", "*")
+                .DELETE().build()).statusCode();
+        if (status != HttpURLConnection.HTTP_OK && status != HttpURLConnection.HTTP_NO_CONTENT
+                && status != HttpURLConnection.HTTP_NOT_FOUND) {
+            throw new IOException(String.format("Could not delete %s: %d", filePath, status));
+        }
+    }
+
+    /**
+     * Polls the status of a deployment started asynchronously, until it completes or the timeout expires. Throws an
+     * exception if the deployment failed or did not complete in time.
+     */
+    public void awaitDeployment(String location, long timeoutSeconds) throws IOException {
+        URI statusUri = URI.create(baseUrl + "/").resolve(location);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        long interval = INITIAL_BACKOFF_MILLIS;
+        String lastStatus = null;
+        while (true) {
+            HttpResponse<String> response = sendWithRetry(() -> HttpRequest.newBuilder(statusUri)
+                    .timeout(requestTimeout)
+                    .header("Authorization", String.format("Basic %s", encodedCredentials))
+                    .GET().build());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException(String.format("Could not get the deployment status: %d", response.statusCode()));
+            }
+
+            JsonNode deployment = response.body().isEmpty() ? mapper.createObjectNode() : mapper.readTree(response.body());
+            String statusText = deployment.path("status_text").asText("");
+            if (!statusText.isEmpty() && !statusText.equals(lastStatus)) {
+                log.info("Deployment status: " + statusText);
+                lastStatus = statusText;
+            }
+            if (deployment.path("complete").asBoolean(false)) {
+                int status = deployment.path("status").asInt(-1);
+                if (status == DEPLOYMENT_SUCCESS) {
+                    return;
+                }
+                throw new IOException(String.format("Deployment %s failed with status %d%s",
+                        deployment.path("id").asText(""), status,
+                        deployment.has("log_url") ? ", see " + deployment.path("log_url").asText() : ""));
+            }
+
+            if (System.nanoTime() > deadline) {
+                throw new IOException("Deployment did not complete within " + timeoutSeconds + " seconds");
+            }
+            sleep(interval);
+            interval = Math.min(interval * 3 / 2, MAX_POLL_INTERVAL_MILLIS);
+        }
+    }
+
+    private HttpRequest.Builder request(String method, String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(requestTimeout)
+                .header("Authorization", String.format("Basic %s", encodedCredentials));
+    }
+
+    private HttpResponse<String> sendWithRetry(Supplier<HttpRequest> request) throws IOException {
+        return sendWithRetry(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private <T> HttpResponse<T> sendWithRetry(Supplier<HttpRequest> request, HttpResponse.BodyHandler<T> handler)
+            throws IOException {
+        // retries connection failures, timeouts and the statuses returned while the SCM site is restarting or
+        // throttling; a POST starts a deployment, so it is only retried when it cannot have been processed
+        for (int attempt = 0; ; attempt++) {
+            HttpRequest httpRequest = request.get();
+            boolean idempotent = !httpRequest.method().equals("POST");
+            try {
+                HttpResponse<T> response = client.send(httpRequest, handler);
+                Set<Integer> retriedStatuses = idempotent ? TRANSIENT_STATUSES : NOT_PROCESSED_STATUSES;
+                if (!retriedStatuses.contains(response.statusCode()) || attempt >= retries) {
+                    return response;
+                }
+                log.warn(String.format("%s %s answered with %d, retrying", httpRequest.method(), httpRequest.uri(),
+                        response.statusCode()));
+            } catch (IOException e) {
+                if (attempt >= retries || hasCause(e, BodyProducerException.class)
+                        || (!idempotent && !isConnectionFailure(e))) {
+                    throw e;
+                }
+                log.warn(String.format("%s %s failed (%s), retrying", httpRequest.method(), httpRequest.uri(), e));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while sending " + httpRequest.uri(), e);
+            }
+            // full jitter, so that parallel builds do not retry in lockstep
+            long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << attempt);
+            sleep(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1));
+        }
+    }
+
+    private static boolean isConnectionFailure(IOException e) {
+        // the request was not sent at all
+        return e instanceof HttpConnectTimeoutException || hasCause(e, ConnectException.class);
+    }
+
+    private static boolean hasCause(Throwable e, Class<? extends Throwable> type) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getUploadedBytes() {
+        return uploadedBytes.get();
+    }
+
+    @Override
+    public void close() {
+        // interrupts the producers still writing into the pipe of an abandoned request
+        bodyProducers.shutdownNow();
+    }
+
+    private void logThroughput(long bytes, long startNanos) {
+        uploadedBytes.addAndGet(bytes);
+        double seconds = Math.max(1, System.nanoTime() - startNanos) / 1e9;
+        double megabytes = bytes / (1_024.0 * 1_024.0);
+        log.info(String.format("Uploaded %.2f MB in %.2f s (%.2f MB/s)", megabytes, seconds, megabytes / seconds));
+    }
+
+    private static HttpRequest.BodyPublisher ofFile(Path file) {
+        try {
+            return HttpRequest.BodyPublishers.ofFile(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the SCM site", e);
+        }
+    }
+
+    private static String encodePath(String path) {
+        return Arrays.stream(path.split("/", -1))
+                .map(segment -> URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20"))
+                .collect(Collectors.joining("/"));
+    }
+
+    private static class StreamingBody {
+
+        // connects the body writer, running on its own thread, with the HTTP client reading the request body
+
+        private final BodyWriter body;
+        private final AtomicLong size;
+        private final ExecutorService executor;
+        private PipedInputStream input;
+        private CompletableFuture<Void> producer;
+        private volatile IOException failure; // of the body writer, raised by the body stream to abort the request
+
+        StreamingBody(BodyWriter body, AtomicLong size, ExecutorService executor) {
+            this.body = body;
+            this.size = size;
+            this.executor = executor;
+        }
+
+        synchronized InputStream start() {
+            try {
+                input = new PipedInputStream(UPLOAD_CHUNK_SIZE);
+                PipedOutputStream output = new PipedOutputStream(input);
+                size.set(0);
+                producer = CompletableFuture.runAsync(() -> {
+                    try {
+                        OutputStream counting = new CountingOutputStream(output, size);
+                        body.write(counting);
+                        counting.close();
+                    } catch (IOException | RuntimeException e) {
+                        // recorded before the pipe is closed, so that the client reads the failure instead of the
+                        // end of a truncated body, which would be sent as a complete one
+                        failure = new BodyProducerException(e);
+                        try {
+                            output.close();
+                        } catch (IOException closeFailure) {
+                            // the reader fails on the recorded failure anyway
+                        }
+                        throw new UncheckedIOException(failure);
+                    }
+                }, executor);
+                return new FailingInputStream(input);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        synchronized void close() {
+            // unblocks the producer if the request ended before the whole body was read
+            try {
+                if (input != null) {
+                    input.close();
+                }
+            } catch (IOException e) {
+                // closing a pipe does not fail
+            }
+        }
+
+        private class FailingInputStream extends FilterInputStream {
+
+            FailingInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                int value = super.read();
+                checkFailure();
+                return value;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = super.read(b, off, len);
+                checkFailure();
+                return count;
+            }
+
+            private void checkFailure() throws IOException {
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        }
+
+        synchronized void checkProduced() throws IOException {
+            if (producer == null) {
+                return;
+            }
+            try {
+                producer.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while producing the request body", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                throw cause instanceof BodyProducerException ? (IOException) cause
+                        : new IOException("Could not produce the request body", cause);
+            }
+        }
+
+    }
+
+    private static class BodyProducerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            // daemon threads, so that a producer that did not stop does not keep Maven from exiting
+            Thread thread = new Thread(runnable, "azf-upload-body-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+    private static class BodyProducerException extends IOException {
+
+        BodyProducerException(Throwable cause) {
+            super("Could not produce the request body", cause);
+        }
+
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private final AtomicLong count;
+
+        CountingOutputStream(OutputStream out, AtomicLong count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count.addAndGet(len);
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.kumuluz.ee.serverless.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Performs file writes on a fixed number of threads. At most a bounded number of writes can be pending, so callers
+ * producing content faster than it can be written are throttled instead of queueing everything in memory.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class BoundedFileWriter implements Closeable {
+
+    private final ExecutorService executor;
+    private final Semaphore pendingWrites;
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+    @FunctionalInterface
+    public interface WriteTask {
+        void run() throws IOException;
+    }
+
+    public BoundedFileWriter(int threads) {
+        int writerThreads = Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(writerThreads);
+        this.pendingWrites = new Semaphore(writerThreads * 4);
+    }
+
+    public void write(Path file, String content) throws IOException {
+        write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void write(Path file, byte[] content) throws IOException {
+        submit(() -> {
+            Files.createDirectories(file.getParent());
+            Files.write(file, content);
+        });
+    }
+
+    public void submit(WriteTask task) throws IOException {
+        try {
+            pendingWrites.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for pending writes", e);
+        }
+        executor.execute(() -> {
+            try {
+                if (failure.get() == null) {
+                    task.run();
+                }
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, new IOException(e));
+            } finally {
+                pendingWrites.release();
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        // waits for all the pending writes and rethrows the first failure, if any
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting, large copies may take a while
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for pending writes", e);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+}
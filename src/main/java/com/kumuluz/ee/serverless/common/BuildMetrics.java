@@ -0,0 +1,165 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Wall time and counters of the phases of a goal, such as the files and bytes each phase read and wrote. The results
+ * are written as a JSON metrics file, to track the performance of builds over time, and as a trace in the Chrome trace
+ * event format, which can be opened in Perfetto or `chrome://tracing`. Phases may be nested.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class BuildMetrics {
+
+    public static final String METRICS_FILE_PREFIX = "azf-metrics-";
+    public static final String TRACE_FILE_PREFIX = "azf-trace-";
+
+    private final String goal;
+    private final Instant startTime = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final List<Phase> phases = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    public class Phase implements AutoCloseable {
+
+        private final String name;
+        private final long threadId = Thread.currentThread().getId();
+        private final long start = System.nanoTime();
+        private volatile long end;
+        private final Map<String, AtomicLong> phaseCounters = new ConcurrentHashMap<>();
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        public Phase add(String counter, long value) {
+            phaseCounters.computeIfAbsent(counter, key -> new AtomicLong()).addAndGet(value);
+            return this;
+        }
+
+        public long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis((end != 0 ? end : System.nanoTime()) - start);
+        }
+
+        @Override
+        public void close() {
+            end = System.nanoTime();
+        }
+    }
+
+    public BuildMetrics(String goal) {
+        this.goal = goal;
+    }
+
+    public Phase start(String name) {
+        Phase phase = new Phase(name);
+        phases.add(phase);
+        return phase;
+    }
+
+    /**
+     * Adds to a counter of the whole goal, e.g. from the workers of several phases.
+     */
+    public void add(String counter, long value) {
+        counters.computeIfAbsent(counter, key -> new AtomicLong()).addAndGet(value);
+    }
+
+    public long get(String counter) {
+        AtomicLong value = counters.get(counter);
+        return value != null ? value.get() : 0;
+    }
+
+    /**
+     * Returns the duration of every phase, for a one-line summary in the build log.
+     */
+    public String getSummary() {
+        List<Phase> snapshot;
+        synchronized (phases) {
+            snapshot = new ArrayList<>(phases);
+        }
+        return snapshot.stream().map(phase -> phase.name + " " + phase.getMillis() + " ms")
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Writes the metrics and the trace into the given folder, returns the metrics file.
+     */
+    public Path write(Path folder) throws IOException {
+        long endNanos = System.nanoTime();
+        List<Phase> snapshot;
+        synchronized (phases) {
+            snapshot = new ArrayList<>(phases);
+        }
+        ObjectMapper mapper = new ObjectMapper();
+
+        ObjectNode metrics = mapper.createObjectNode();
+        metrics.put("goal", goal);
+        metrics.put("startTime", startTime.toString());
+        metrics.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos));
+        putCounters(metrics.putObject("counters"), counters, endNanos - startNanos);
+        ArrayNode phasesNode = metrics.putArray("phases");
+        for (Phase phase : snapshot) {
+            long phaseEnd = phase.end != 0 ? phase.end : endNanos;
+            ObjectNode phaseNode = phasesNode.addObject();
+            phaseNode.put("name", phase.name);
+            phaseNode.put("startMillis", TimeUnit.NANOSECONDS.toMillis(phase.start - startNanos));
+            phaseNode.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(phaseEnd - phase.start));
+            putCounters(phaseNode.putObject("counters"), phase.phaseCounters, phaseEnd - phase.start);
+        }
+
+        // complete events, in microseconds since the start of the goal; nested phases are shown inside their parent
+        ObjectNode trace = mapper.createObjectNode();
+        ArrayNode events = trace.putArray("traceEvents");
+        ObjectNode processName = events.addObject();
+        processName.put("name", "process_name");
+        processName.put("ph", "M");
+        processName.put("pid", 1);
+        processName.putObject("args").put("name", goal);
+        for (Phase phase : snapshot) {
+            long phaseEnd = phase.end != 0 ? phase.end : endNanos;
+            ObjectNode event = events.addObject();
+            event.put("name", phase.name);
+            event.put("cat", goal);
+            event.put("ph", "X");
+            event.put("ts", TimeUnit.NANOSECONDS.toMicros(phase.start - startNanos));
+            event.put("dur", TimeUnit.NANOSECONDS.toMicros(phaseEnd - phase.start));
+            event.put("pid", 1);
+            event.put("tid", phase.threadId);
+            ObjectNode args = event.putObject("args");
+            new TreeMap<>(phase.phaseCounters).forEach((counter, value) -> args.put(counter, value.get()));
+        }
+        trace.put("displayTimeUnit", "ms");
+
+        Files.createDirectories(folder);
+        Path metricsFile = folder.resolve(METRICS_FILE_PREFIX + goal + ".json");
+        mapper.writerWithDefaultPrettyPrinter().writeValue(metricsFile.toFile(), metrics);
+        mapper.writeValue(folder.resolve(TRACE_FILE_PREFIX + goal + ".json").toFile(), trace);
+        return metricsFile;
+    }
+
+    private static void putCounters(ObjectNode node, Map<String, AtomicLong> values, long nanos) {
+        // the byte and file counters come with their throughput
+        double seconds = Math.max(1, nanos) / 1e9;
+        new TreeMap<>(values).forEach((counter, value) -> {
+            node.put(counter, value.get());
+            if (counter.endsWith("Bytes") || counter.endsWith("Files")) {
+                node.put(counter + "PerSecond", Math.round(value.get() / seconds * 10) / 10.0);
+            }
+        });
+    }
+
+}
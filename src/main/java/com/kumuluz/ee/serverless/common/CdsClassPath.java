@@ -0,0 +1,58 @@
+package com.kumuluz.ee.serverless.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+/**
+ * Class path of the exploded layout for a class data sharing archive. The JVM refuses to dump an archive when a
+ * non-empty folder is on the class path, and it only uses an archive when the class path lists the same jars in the
+ * same order as when it was dumped. So the `classes` folder is packed into a jar, and the dependencies are listed one
+ * by one in name order instead of with a wildcard, whose expansion follows the order of the file system.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class CdsClassPath {
+
+    public static final String CLASSES_JAR = "classes.jar";
+    private static final String DEPENDENCY_FOLDER = "dependency";
+
+    /**
+     * Packs the given classes folder into a jar. The jar is reproducible, so it is left untouched when the classes
+     * did not change, which keeps the archive valid. Returns true if the jar was written.
+     */
+    public static boolean writeClassesJar(Path classesFolder, Path jarFile) throws IOException {
+        ByteArrayOutputStream jar = new ByteArrayOutputStream();
+        new ZipPackager(Runtime.getRuntime().availableProcessors(), Deflater.NO_COMPRESSION, true)
+                .zip(classesFolder, file -> true, jar);
+        return Commons.writeIfChanged(jarFile, jar.toByteArray());
+    }
+
+    /**
+     * Returns the class path of the handler, relative to the function app root: the classes jar followed by the jars
+     * of the given dependency folder, sorted by name and joined with the given separator.
+     */
+    public static String getClassPath(Path dependencyFolder, String separator) throws IOException {
+        List<String> classPath = new ArrayList<>();
+        classPath.add(CLASSES_JAR);
+        if (Files.isDirectory(dependencyFolder)) {
+            try (Stream<Path> files = Files.list(dependencyFolder)) {
+                classPath.addAll(files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.endsWith(".jar"))
+                        .sorted()
+                        .map(name -> DEPENDENCY_FOLDER + "/" + name)
+                        .collect(Collectors.toList()));
+            }
+        }
+        return String.join(separator, classPath);
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.kumuluz.ee.serverless.common.enums.StagingStrategyEnum;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.logging.Logger;
+
+/**
+ * Places the code of the application in the configuration folder by linking or copying it. Files that are already
+ * staged are left untouched, and links fall back to copies when the file system does not support them.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class CodeStager {
+
+    private static final Logger log = Logger.getLogger(CodeStager.class.getName());
+
+    private volatile StagingStrategyEnum strategy;
+
+    public CodeStager(StagingStrategyEnum strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Stages the source file at the target path and returns false if the target was already up to date.
+     */
+    public boolean stage(Path source, Path target) throws IOException {
+        BasicFileAttributes sourceAttributes = Files.readAttributes(source, BasicFileAttributes.class);
+        if (isUpToDate(source, sourceAttributes, target)) {
+            return false;
+        }
+
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+        try {
+            if (strategy == StagingStrategyEnum.HARDLINK) {
+                Files.createLink(target, source);
+                return true;
+            } else if (strategy == StagingStrategyEnum.SYMLINK) {
+                Files.createSymbolicLink(target, source.toAbsolutePath());
+                return true;
+            }
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            log.warning(String.format("Could not create %s (%s), falling back to copying the files",
+                    strategy.name().toLowerCase(), e.getMessage()));
+            strategy = StagingStrategyEnum.COPY;
+        }
+
+        copy(source, target);
+        if (Files.isExecutable(source)) {
+            // e.g. the executables of a linked runtime
+            target.toFile().setExecutable(true, false);
+        }
+        Files.setLastModifiedTime(target, sourceAttributes.lastModifiedTime());
+        return true;
+    }
+
+    private boolean isUpToDate(Path source, BasicFileAttributes sourceAttributes, Path target) throws IOException {
+        if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+
+        if (Files.isSymbolicLink(target)) {
+            return strategy == StagingStrategyEnum.SYMLINK
+                    && Files.readSymbolicLink(target).equals(source.toAbsolutePath());
+        } else if (strategy == StagingStrategyEnum.HARDLINK) {
+            return Files.isSameFile(source, target);
+        }
+
+        // copies are considered unchanged when they have the size and modification time of the source
+        if (Files.isSameFile(source, target)) {
+            return false; // hard link left by a previous build, replace it with a real copy
+        }
+        BasicFileAttributes targetAttributes = Files.readAttributes(target, BasicFileAttributes.class);
+        return targetAttributes.size() == sourceAttributes.size()
+                && targetAttributes.lastModifiedTime().equals(sourceAttributes.lastModifiedTime());
+    }
+
+    private static void copy(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+}
@@ -5,14 +5,20 @@ import org.apache.maven.model.PluginExecution;
 import org.apache.maven.project.MavenProject;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author Boris Radovic
@@ -21,7 +27,7 @@ import java.util.zip.ZipOutputStream;
 
 public class Commons {
 
-    private static Logger log = Logger.getLogger(Commons.class.getName());
+    private static final Logger log = Logger.getLogger(Commons.class.getName());
 
     public static String getJavaVersion(MavenProject project) {
         String javaVersion = (String) project.getProperties().get("maven.compiler.target");
@@ -58,41 +64,132 @@ public class Commons {
         Files.writeString(file.toPath(), config);
     }
 
+    public static String hash(String content) {
+        return hash(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String hash(byte[] content) {
+        MessageDigest digest = newDigest();
+        digest.update(content);
+        return toHex(digest.digest());
+    }
+
+    public static String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1_024];
+            int length;
+            while ((length = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, length);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the JVM", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    public static String escapeJson(String value) {
+        // escapes the characters that cannot appear as they are within a JSON string
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+
     public static String getJavaPath() {
         return Paths.get("%JAVA_HOME%", "bin", "java").toString();
     }
 
-    public static boolean isWindowsOs() {
-        return System.getProperty("os.name").equalsIgnoreCase("windows");
+    public static long percentile(List<Long> sortedValues, double percentile) {
+        // nearest-rank percentile of an ascending list
+        int rank = (int) Math.ceil(percentile / 100 * sortedValues.size());
+        return sortedValues.get(Math.min(sortedValues.size() - 1, Math.max(0, rank - 1)));
     }
 
-    public static void chmod777 (File file) {
-        file.setReadable(true, false);
-        file.setWritable(true, false);
-        file.setExecutable(true, false);
+    public static boolean isWindowsOs() {
+        return System.getProperty("os.name").equalsIgnoreCase("windows");
     }
 
-    public static void zipSingleFile(Path file, Path folder, ZipOutputStream zipOut) throws IOException {
-        if (file.toString().equals(folder.toString()) || file.toString().contains("Dockerfile")) {
+    public static void deleteRecursively(Path folder) throws IOException {
+        if (!Files.exists(folder, LinkOption.NOFOLLOW_LINKS)) {
             return;
         }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(folder)) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+    }
 
-        String fileName = folder.relativize(file).toString();
-        if (file.toFile().isDirectory()) {
-            zipOut.putNextEntry(new ZipEntry(fileName + "/"));
-            zipOut.closeEntry();
-        } else {
-            try (FileInputStream fis = new FileInputStream(file.toString())) {
-
-                ZipEntry zipEntry = new ZipEntry(fileName);
-                zipOut.putNextEntry(zipEntry);
-                byte[] bytes = new byte[1_024];
-                int length;
-                while ((length = fis.read(bytes)) >= 0) {
-                    zipOut.write(bytes, 0, length);
-                }
+    public static byte[] readPluginClassFile(String classFile) throws IOException {
+        // the runtime classes are copied from the plugin jar into the application as they are
+        try (InputStream in = Commons.class.getClassLoader().getResourceAsStream(classFile)) {
+            if (in == null) {
+                throw new IOException(classFile + " not found in the plugin");
             }
+            return in.readAllBytes();
         }
     }
 
+    public static boolean writeIfChanged(Path file, byte[] bytes) throws IOException {
+        if (Files.exists(file) && Arrays.equals(Files.readAllBytes(file), bytes)) {
+            return false;
+        }
+        Files.createDirectories(file.getParent());
+        Files.write(file, bytes);
+        return true;
+    }
+
+    public static void chmod777 (File file) {
+        file.setReadable(true, false);
+        file.setWritable(true, false);
+        file.setExecutable(true, false);
+    }
+
 }
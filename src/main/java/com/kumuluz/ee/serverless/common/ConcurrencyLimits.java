@@ -0,0 +1,103 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.kumuluz.ee.serverless.common.pojo.IndexedClass;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import com.kumuluz.ee.serverless.runtime.ConcurrencyLimitFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Resolves the concurrency limits of the plugin configuration to the resource methods found by the build-time scan,
+ * and writes them into the compiled classes together with the {@link ConcurrencyLimitFilter} that enforces them at
+ * runtime. The Functions host only limits the concurrent requests of the whole function app, so a slow endpoint can
+ * take all of them; a limit per endpoint keeps some capacity for the others.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class ConcurrencyLimits {
+
+    public static final String TABLE_FILE = ConcurrencyLimitFilter.TABLE_RESOURCE.substring(1);
+    public static final String FILTER_CLASS = ConcurrencyLimitFilter.class.getName();
+    private static final String FILTER_CLASS_FILE = FILTER_CLASS.replace('.', '/');
+    private static final List<String> FILTER_CLASS_FILES = Arrays.asList(FILTER_CLASS_FILE + ".class",
+            FILTER_CLASS_FILE + "$Permit.class");
+
+    private static final Logger log = Logger.getLogger(ConcurrencyLimits.class.getName());
+
+    /**
+     * Returns the limit of every resource method, as `class#method`, that one of the given limits applies to. The
+     * limits are keyed by `SimpleClassName.method`, `fully.qualified.ClassName.method`, `SimpleClassName` or
+     * `fully.qualified.ClassName`, the most specific key wins. Limits of a class apply to each of its methods.
+     * Limits that are not a positive number are skipped.
+     */
+    public static SortedMap<String, Integer> resolve(Collection<IndexedClass> classes, Map<String, String> hints) {
+        SortedMap<String, Integer> resolved = new TreeMap<>(); // sorted, so that the table is reproducible
+        if (hints == null || hints.isEmpty()) {
+            return resolved;
+        }
+        Map<String, Integer> limits = new HashMap<>();
+        hints.forEach((key, value) -> {
+            int limit = parseLimit(value);
+            if (limit > 0) {
+                limits.put(key, limit);
+            } else {
+                log.warning("Invalid concurrency limit " + value + " of " + key + ", it has to be a positive " +
+                        "number. Will not limit it");
+            }
+        });
+        for (IndexedClass indexedClass : classes) {
+            for (RestEndpoint endpoint : indexedClass.getEndpoints()) {
+                endpoint.getHintKeys().stream().map(limits::get).filter(Objects::nonNull).findFirst()
+                        .ifPresent(limit -> resolved.put(endpoint.getClassName() + "#" + endpoint.getMethodName(),
+                                limit));
+            }
+        }
+        return resolved;
+    }
+
+    private static int parseLimit(String value) {
+        try {
+            return value != null ? Integer.parseInt(value.trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Writes the limit table and the filter classes into the given classes folder. Files are left untouched when their
+     * content did not change. Returns true if any file was written.
+     */
+    public static boolean write(Path classesFolder, SortedMap<String, Integer> limits) throws IOException {
+        StringBuilder content = new StringBuilder();
+        content.append("# Generated by the serverless-maven-plugin, do not edit\n");
+        content.append("# resource method\tconcurrent requests\n");
+        limits.forEach((resourceMethod, limit) -> content.append(resourceMethod).append('\t').append(limit).append('\n'));
+
+        boolean written = Commons.writeIfChanged(classesFolder.resolve(TABLE_FILE),
+                content.toString().getBytes(StandardCharsets.UTF_8));
+        for (String classFile : FILTER_CLASS_FILES) {
+            written |= Commons.writeIfChanged(classesFolder.resolve(classFile), Commons.readPluginClassFile(classFile));
+        }
+        return written;
+    }
+
+    /**
+     * Removes the limit table and the filter classes from the given classes folder, e.g. after the last limit was
+     * removed from the configuration. Returns true if any file was removed.
+     */
+    public static boolean remove(Path classesFolder) throws IOException {
+        boolean removed = Files.deleteIfExists(classesFolder.resolve(TABLE_FILE));
+        for (String classFile : FILTER_CLASS_FILES) {
+            removed |= Files.deleteIfExists(classesFolder.resolve(classFile));
+        }
+        return removed;
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.kumuluz.ee.serverless.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of the content hashes of the files generated in the configuration folder, so that consecutive builds
+ * only write the files whose inputs changed and remove the files that are no longer produced.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class ConfigManifest {
+
+    private final Path manifestFile;
+    private final Path baseDirectory;
+    private final Map<String, String> previous = new ConcurrentHashMap<>();
+    private final Map<String, String> current = new ConcurrentHashMap<>();
+
+    private ConfigManifest(Path manifestFile, Path baseDirectory) {
+        this.manifestFile = manifestFile;
+        this.baseDirectory = baseDirectory;
+    }
+
+    public static ConfigManifest load(Path manifestFile, Path baseDirectory, boolean incremental) throws IOException {
+        ConfigManifest manifest = new ConfigManifest(manifestFile, baseDirectory);
+        if (incremental && Files.exists(manifestFile)) {
+            Properties prop = new Properties();
+            try (InputStream in = Files.newInputStream(manifestFile)) {
+                prop.load(in);
+            }
+            prop.stringPropertyNames().forEach(key -> manifest.previous.put(key, prop.getProperty(key)));
+        }
+        return manifest;
+    }
+
+    /**
+     * Records the hash of the inputs of the given file and returns true if the file has to be (re)written.
+     */
+    public boolean record(String relativePath, String hash) {
+        String key = track(relativePath, hash);
+        return !hash.equals(previous.get(key)) || !Files.exists(baseDirectory.resolve(key));
+    }
+
+    /**
+     * Records that the given file is produced by the current build, without checking whether it changed.
+     */
+    public String track(String relativePath, String hash) {
+        String key = toKey(relativePath);
+        current.put(key, hash);
+        return key;
+    }
+
+    /**
+     * Deletes the files that were produced by the previous build but not by the current one, together with the
+     * folders that became empty. Returns the number of deleted files.
+     */
+    public int removeStaleFiles() throws IOException {
+        List<String> stale = previous.keySet().stream()
+                .filter(key -> !current.containsKey(key))
+                .collect(Collectors.toList());
+        for (String key : stale) {
+            Path file = baseDirectory.resolve(key);
+            Files.deleteIfExists(file);
+            deleteEmptyParents(file.getParent());
+        }
+        return stale.size();
+    }
+
+    public void save() throws IOException {
+        Properties prop = new Properties();
+        prop.putAll(current);
+        Files.createDirectories(manifestFile.getParent());
+        try (OutputStream out = Files.newOutputStream(manifestFile)) {
+            prop.store(out, "Generated by the serverless-maven-plugin, do not edit");
+        }
+    }
+
+    private void deleteEmptyParents(Path folder) throws IOException {
+        while (folder != null && !folder.equals(baseDirectory) && folder.startsWith(baseDirectory)
+                && Files.isDirectory(folder)) {
+            try (DirectoryStream<Path> content = Files.newDirectoryStream(folder)) {
+                if (content.iterator().hasNext()) {
+                    return;
+                }
+            }
+            Files.delete(folder);
+            folder = folder.getParent();
+        }
+    }
+
+    private static String toKey(String relativePath) {
+        return relativePath.replace('\\', '/');
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.kumuluz.ee.serverless.common;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Hashes of the files that make up a deployment package, keyed by their path relative to the package root.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class DeploymentManifest {
+
+    public static Map<String, String> compute(Map<String, Path> entries) throws IOException {
+        return compute(entries, Collections.emptyMap());
+    }
+
+    /**
+     * Hashes the files the entries of a package are read from, except the ones whose hash is already known; the
+     * folders have no content.
+     */
+    public static Map<String, String> compute(Map<String, Path> entries, Map<Path, String> knownHashes)
+            throws IOException {
+        Map<String, String> manifest = new TreeMap<>();
+        for (Map.Entry<String, Path> entry : entries.entrySet()) {
+            if (Files.isRegularFile(entry.getValue())) {
+                String hash = knownHashes.get(entry.getValue());
+                manifest.put(entry.getKey(), hash != null ? hash : Commons.hash(entry.getValue()));
+            }
+        }
+        return manifest;
+    }
+
+    public static Map<String, String> read(byte[] content) throws IOException {
+        Properties prop = new Properties();
+        prop.load(new ByteArrayInputStream(content));
+        Map<String, String> manifest = new TreeMap<>();
+        prop.stringPropertyNames().forEach(key -> manifest.put(key, prop.getProperty(key)));
+        return manifest;
+    }
+
+    public static void write(Path file, Map<String, String> manifest) throws IOException {
+        // written without the date and with sorted entries, so that the same files always give the same manifest
+        Properties prop = new Properties();
+        prop.putAll(manifest);
+        StringWriter writer = new StringWriter();
+        prop.store(writer, null);
+        List<String> lines = writer.toString().lines()
+                .filter(line -> !line.startsWith("#"))
+                .sorted()
+                .collect(Collectors.toList());
+        lines.add(0, "# Generated by the serverless-maven-plugin, do not edit");
+        Files.write(file, lines, StandardCharsets.ISO_8859_1);
+    }
+
+}
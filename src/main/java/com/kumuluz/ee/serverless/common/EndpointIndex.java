@@ -0,0 +1,106 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.kumuluz.ee.serverless.common.enums.RestMethodEnum;
+import com.kumuluz.ee.serverless.common.pojo.IndexedClass;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * On-disk index of the JAX-RS endpoints declared by each class file of the project. Entries are keyed by the path of
+ * the class file (relative to the output directory) and carry the hash of its content, so that only the class files
+ * that changed since the previous build need to be scanned again.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class EndpointIndex {
+
+    private static final Logger log = Logger.getLogger(EndpointIndex.class.getName());
+
+    private static final int FORMAT_VERSION = 3;
+
+    public static Map<String, IndexedClass> load(Path indexFile) {
+        Map<String, IndexedClass> index = new HashMap<>();
+        if (!Files.exists(indexFile)) {
+            return index;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return index;
+            }
+            int classCount = in.readInt();
+            for (int i = 0; i < classCount; i++) {
+                String classFile = in.readUTF();
+                IndexedClass indexedClass = new IndexedClass();
+                indexedClass.setHash(in.readUTF());
+                indexedClass.setClassName(in.readUTF());
+                indexedClass.setSimpleClassName(in.readUTF());
+                indexedClass.setApplicationPath(in.readBoolean() ? in.readUTF() : null);
+                indexedClass.setResource(in.readBoolean());
+                indexedClass.setProvider(in.readBoolean());
+                int endpointCount = in.readInt();
+                for (int j = 0; j < endpointCount; j++) {
+                    RestEndpoint endpoint = new RestEndpoint();
+                    endpoint.setClassName(indexedClass.getClassName());
+                    endpoint.setSimpleClassName(indexedClass.getSimpleClassName());
+                    endpoint.setRestMethodEnum(RestMethodEnum.valueOf(in.readUTF()));
+                    endpoint.setMethodName(in.readUTF());
+                    endpoint.setClassUrl(in.readUTF());
+                    endpoint.setMethodUrl(in.readUTF());
+                    indexedClass.getEndpoints().add(endpoint);
+                }
+                int locatorCount = in.readInt();
+                for (int j = 0; j < locatorCount; j++) {
+                    indexedClass.getLocatorUrls().add(in.readUTF());
+                }
+                index.put(classFile, indexedClass);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // a corrupted or outdated index only means that the project has to be scanned from scratch
+            log.warning("Could not read the endpoint index " + indexFile + ", rescanning the whole project");
+            index.clear();
+        }
+        return index;
+    }
+
+    public static void save(Path indexFile, Map<String, IndexedClass> index) throws IOException {
+        Files.createDirectories(indexFile.getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(index.size());
+            for (Map.Entry<String, IndexedClass> entry : index.entrySet()) {
+                IndexedClass indexedClass = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeUTF(indexedClass.getHash());
+                out.writeUTF(indexedClass.getClassName());
+                out.writeUTF(indexedClass.getSimpleClassName());
+                out.writeBoolean(indexedClass.getApplicationPath() != null);
+                if (indexedClass.getApplicationPath() != null) {
+                    out.writeUTF(indexedClass.getApplicationPath());
+                }
+                out.writeBoolean(indexedClass.isResource());
+                out.writeBoolean(indexedClass.isProvider());
+                out.writeInt(indexedClass.getEndpoints().size());
+                for (RestEndpoint endpoint : indexedClass.getEndpoints()) {
+                    out.writeUTF(endpoint.getRestMethodEnum().name());
+                    out.writeUTF(endpoint.getMethodName());
+                    out.writeUTF(endpoint.getClassUrl());
+                    out.writeUTF(endpoint.getMethodUrl());
+                }
+                out.writeInt(indexedClass.getLocatorUrls().size());
+                for (String locatorUrl : indexedClass.getLocatorUrls()) {
+                    out.writeUTF(locatorUrl);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.kumuluz.ee.serverless.common.enums.ConsolidationStrategyEnum;
+import com.kumuluz.ee.serverless.common.pojo.FunctionDefinition;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Groups the JAX-RS endpoints into functions. Since every function forwards its requests to the same custom handler,
+ * which dispatches them with JAX-RS, a function may serve any number of endpoints as long as its route matches
+ * their paths.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class FunctionConsolidator {
+
+    private static final String CATCH_ALL = "{*azfPath}";
+    private static final String PROXY_FUNCTION = "Proxy";
+    private static final Pattern TEMPLATE_PARAMETER = Pattern.compile("\\{([^}]*)}");
+
+    // route segment precedence of the Functions host, the more specific segments are lower
+    private static final int LITERAL_SEGMENT = 1;
+    private static final int COMPLEX_SEGMENT = 2;
+    private static final int PARAMETER_SEGMENT = 3;
+    private static final int CATCH_ALL_SEGMENT = 5;
+
+    public static List<FunctionDefinition> consolidate(List<RestEndpoint> endpoints, ConsolidationStrategyEnum strategy) {
+        switch (strategy) {
+            case CLASS:
+                // classes with the same path, which JAX-RS allows, would get equal routes, so they share a function
+                return group(endpoints, endpoint -> getRouteKey(join(endpoint.getBaseAppUrl(), endpoint.getClassUrl())),
+                        endpoint -> join(endpoint.getBaseAppUrl(), endpoint.getClassUrl()),
+                        RestEndpoint::getSimpleClassName);
+            case PREFIX:
+                return group(endpoints, FunctionConsolidator::getPrefix, FunctionConsolidator::getPrefix,
+                        endpoint -> "Prefix_" + getPrefix(endpoint));
+            case PROXY:
+                return group(endpoints, endpoint -> "", endpoint -> "", endpoint -> PROXY_FUNCTION);
+            default:
+                List<FunctionDefinition> functions = new ArrayList<>();
+                for (RestEndpoint endpoint : endpoints) {
+                    FunctionDefinition function = new FunctionDefinition();
+                    function.setName(endpoint.getFolderName());
+                    function.setRoute(endpoint.getCompleteURL());
+                    function.getMethods().add(endpoint.getRestMethodEnum());
+                    function.getEndpoints().add(endpoint);
+                    functions.add(function);
+                }
+                return functions;
+        }
+    }
+
+    /**
+     * Checks that the request of every endpoint is routed to exactly one function, the way the Functions host selects
+     * the function: among the functions whose route matches the path and which accept the method, the one with the
+     * most specific route is chosen. Returns the description of each problem found.
+     */
+    public static List<String> findRouteConflicts(List<RestEndpoint> endpoints, List<FunctionDefinition> functions) {
+        List<String> conflicts = new ArrayList<>();
+        Map<FunctionDefinition, Pattern> patterns = new HashMap<>();
+        functions.forEach(function -> patterns.put(function, toPattern(function.getRoute())));
+
+        for (RestEndpoint endpoint : endpoints) {
+            String path = toSamplePath(endpoint.getCompleteURL());
+            List<FunctionDefinition> candidates = functions.stream()
+                    .filter(function -> function.getMethods().contains(endpoint.getRestMethodEnum()))
+                    .filter(function -> patterns.get(function).matcher(path).matches())
+                    .collect(Collectors.toList());
+            if (candidates.isEmpty()) {
+                conflicts.add(String.format("%s is not reachable, no function matches %s /%s", endpoint,
+                        endpoint.getRestMethodEnum(), path));
+                continue;
+            }
+
+            List<Integer> best = candidates.stream().map(function -> getPrecedence(function.getRoute()))
+                    .min(FunctionConsolidator::comparePrecedence).orElseThrow();
+            List<String> selected = candidates.stream()
+                    .filter(function -> comparePrecedence(getPrecedence(function.getRoute()), best) == 0)
+                    .map(FunctionDefinition::getName)
+                    .collect(Collectors.toList());
+            if (selected.size() > 1) {
+                conflicts.add(String.format("%s is ambiguous, it matches the functions %s", endpoint,
+                        String.join(", ", selected)));
+            }
+        }
+        return conflicts;
+    }
+
+    private static List<FunctionDefinition> group(List<RestEndpoint> endpoints, Function<RestEndpoint, String> key,
+                                                  Function<RestEndpoint, String> routePrefix,
+                                                  Function<RestEndpoint, String> name) {
+        Map<String, FunctionDefinition> functions = new LinkedHashMap<>();
+        Set<String> names = new HashSet<>();
+        for (RestEndpoint endpoint : endpoints) {
+            FunctionDefinition function = functions.computeIfAbsent(key.apply(endpoint), groupKey -> {
+                FunctionDefinition newFunction = new FunctionDefinition();
+                newFunction.setName(getUniqueName(sanitizeName(name.apply(endpoint)), names));
+                String prefix = stripParameterConstraints(routePrefix.apply(endpoint));
+                newFunction.setRoute(prefix.isEmpty() ? CATCH_ALL : prefix + "/" + CATCH_ALL);
+                return newFunction;
+            });
+            if (!function.getMethods().contains(endpoint.getRestMethodEnum())) {
+                function.getMethods().add(endpoint.getRestMethodEnum());
+            }
+            function.getEndpoints().add(endpoint);
+        }
+        functions.values().forEach(function -> function.getMethods().sort(Comparator.naturalOrder()));
+        return new ArrayList<>(functions.values());
+    }
+
+    private static String getPrefix(RestEndpoint endpoint) {
+        // the application path and the first segment after it, unless that is a template
+        String base = join(endpoint.getBaseAppUrl());
+        String relative = join(endpoint.getCompleteURL()).substring(base.length());
+        String firstSegment = join(relative).split("/")[0];
+        return firstSegment.contains("{") ? base : join(base, firstSegment);
+    }
+
+    private static String getRouteKey(String route) {
+        // routes that differ only in the names or the constraints of their parameters match the same requests
+        return TEMPLATE_PARAMETER.matcher(route).replaceAll("{}");
+    }
+
+    private static String join(String... parts) {
+        // joins the parts of a path, without leading, trailing or double slashes
+        return Arrays.stream(parts)
+                .filter(Objects::nonNull)
+                .flatMap(part -> Arrays.stream(part.split("/")))
+                .filter(segment -> !segment.isEmpty())
+                .collect(Collectors.joining("/"));
+    }
+
+    private static String stripParameterConstraints(String route) {
+        // JAX-RS parameters may carry a regular expression, `{id: [0-9]+}`, which is not valid in a function route
+        Matcher matcher = TEMPLATE_PARAMETER.matcher(route);
+        StringBuffer stripped = new StringBuffer();
+        while (matcher.find()) {
+            matcher.appendReplacement(stripped, Matcher.quoteReplacement("{" + matcher.group(1).split(":")[0].trim() + "}"));
+        }
+        matcher.appendTail(stripped);
+        return stripped.toString();
+    }
+
+    private static String sanitizeName(String name) {
+        // function names may only contain letters, digits, `_` and `-`, and have to start with a letter
+        String sanitized = name.replaceAll("[^A-Za-z0-9_-]", "_");
+        return sanitized.isEmpty() || !Character.isLetter(sanitized.charAt(0)) ? "F" + sanitized : sanitized;
+    }
+
+    private static String getUniqueName(String name, Set<String> names) {
+        String unique = name;
+        for (int i = 2; !names.add(unique); i++) {
+            unique = name + "_" + i;
+        }
+        return unique;
+    }
+
+    private static String toSamplePath(String route) {
+        // a concrete path of the route, with a value in place of every parameter
+        return join(TEMPLATE_PARAMETER.matcher(route).replaceAll("x"));
+    }
+
+    private static Pattern toPattern(String route) {
+        StringBuilder regex = new StringBuilder();
+        String[] segments = join(route).split("/");
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.startsWith("{*")) {
+                // a catch-all parameter also matches nothing, including the slash before it
+                regex.append(i == 0 ? ".*" : "(?:/.*)?");
+                break;
+            }
+            if (i > 0) {
+                regex.append('/');
+            }
+            Matcher matcher = TEMPLATE_PARAMETER.matcher(segment);
+            int literalStart = 0;
+            while (matcher.find()) {
+                regex.append(Pattern.quote(segment.substring(literalStart, matcher.start()))).append("[^/]+");
+                literalStart = matcher.end();
+            }
+            regex.append(Pattern.quote(segment.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static List<Integer> getPrecedence(String route) {
+        List<Integer> precedence = new ArrayList<>();
+        for (String segment : join(route).split("/")) {
+            if (segment.startsWith("{*")) {
+                precedence.add(CATCH_ALL_SEGMENT);
+            } else if (segment.startsWith("{") && segment.endsWith("}") && segment.indexOf('}') == segment.length() - 1) {
+                precedence.add(PARAMETER_SEGMENT);
+            } else if (segment.contains("{")) {
+                precedence.add(COMPLEX_SEGMENT);
+            } else {
+                precedence.add(LITERAL_SEGMENT);
+            }
+        }
+        return precedence;
+    }
+
+    private static int comparePrecedence(List<Integer> first, List<Integer> second) {
+        for (int i = 0; i < Math.min(first.size(), second.size()); i++) {
+            int comparison = Integer.compare(first.get(i), second.get(i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        // with an equal prefix, the route with more segments is more specific
+        return Integer.compare(second.size(), first.size());
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.kumuluz.ee.serverless.common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class JvmArguments {
+
+    private static final Pattern XX_OPTION = Pattern.compile("-XX:[+-]?([^=]+)(=.*)?");
+    private static final Pattern GC_OPTION = Pattern.compile("-XX:\\+Use\\w*GC");
+    private static final Pattern SIZE_OPTION = Pattern.compile("(-Xs[sm]|-Xm[xsn])\\d.*");
+    private static final Pattern SYSTEM_PROPERTY = Pattern.compile("(-D[^=]+)(=.*)?");
+
+    /**
+     * Merges the overrides into the base arguments. An override replaces the base argument that sets the same option,
+     * e.g. `-XX:-UsePerfData` replaces `-XX:+UsePerfData` and `-XX:+UseG1GC` replaces `-XX:+UseSerialGC`.
+     */
+    public static List<String> merge(List<String> base, List<String> overrides) {
+        Map<String, String> merged = new LinkedHashMap<>();
+        base.forEach(argument -> merged.put(getOption(argument), argument));
+        overrides.forEach(argument -> {
+            merged.remove(getOption(argument));
+            merged.put(getOption(argument), argument);
+        });
+        return new ArrayList<>(merged.values());
+    }
+
+    private static String getOption(String argument) {
+        if (GC_OPTION.matcher(argument).matches()) {
+            return "GC"; // only one garbage collector can be selected
+        }
+        Matcher matcher = XX_OPTION.matcher(argument);
+        if (matcher.matches()) {
+            return matcher.group(1);
+        }
+        matcher = SIZE_OPTION.matcher(argument);
+        if (matcher.matches()) {
+            return matcher.group(1);
+        }
+        matcher = SYSTEM_PROPERTY.matcher(argument);
+        if (matcher.matches()) {
+            return matcher.group(1);
+        }
+        return argument;
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.kumuluz.ee.serverless.runtime.KeepWarmServlet;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the {@link KeepWarmServlet} into the compiled classes, so that the handler answers the invocations of the
+ * keep-warm timer function instead of failing them with 404. The timer keeps an instance of the function app and its
+ * JVM from being recycled when there is no traffic.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class KeepWarm {
+
+    public static final String FUNCTION_NAME = KeepWarmServlet.FUNCTION_NAME;
+    private static final String SERVLET_CLASS_FILE = KeepWarmServlet.class.getName().replace('.', '/') + ".class";
+
+    /**
+     * Writes the servlet class into the given classes folder. The file is left untouched when its content did not
+     * change. Returns true if it was written.
+     */
+    public static boolean write(Path classesFolder) throws IOException {
+        return Commons.writeIfChanged(classesFolder.resolve(SERVLET_CLASS_FILE),
+                Commons.readPluginClassFile(SERVLET_CLASS_FILE));
+    }
+
+    /**
+     * Removes the servlet class from the given classes folder, e.g. after the schedule was removed from the
+     * configuration. Returns true if it was removed.
+     */
+    public static boolean remove(Path classesFolder) throws IOException {
+        return Files.deleteIfExists(classesFolder.resolve(SERVLET_CLASS_FILE));
+    }
+
+    public static boolean isEnabled(String schedule) {
+        return schedule != null && !schedule.trim().isEmpty();
+    }
+
+}
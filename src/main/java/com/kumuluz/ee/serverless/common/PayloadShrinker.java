@@ -0,0 +1,199 @@
+package com.kumuluz.ee.serverless.common;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Selects the files of the configuration folder that make up the deployment package. Files matching an exclude
+ * pattern are left out unless they match an include pattern as well, jars with the same content are packaged once,
+ * and entries that are not needed at runtime, such as sources and Maven metadata, can be stripped from the jars.
+ * The bytes saved by each rule are recorded, so that they can be reported, and the hashes of the files are kept, so
+ * that the deployment manifest does not hash them again.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class PayloadShrinker {
+
+    public static final String DUPLICATE_JARS_RULE = "duplicate jars";
+    public static final String STRIP_JARS_RULE = "stripped jar entries";
+
+    // entries of dependency jars that are never loaded at runtime
+    private static final List<String> STRIPPED_JAR_ENTRIES = Arrays.asList("META-INF/maven/**", "**/*.java",
+            "**/package.html");
+
+    private final Map<String, Pattern> includes;
+    private final Map<String, Pattern> excludes;
+    private final boolean dedupeJars;
+    private final Path strippedJarsFolder; // null when the jars are packaged as they are
+    private final List<Pattern> strippedJarEntries;
+    private final Map<String, long[]> savings = new LinkedHashMap<>(); // rule -> files, bytes
+    private final Map<Path, String> hashes = new HashMap<>(); // file -> content hash, of the files hashed so far
+
+    public PayloadShrinker(List<String> includes, List<String> excludes, boolean dedupeJars, Path strippedJarsFolder) {
+        this.includes = compile(includes);
+        this.excludes = compile(excludes);
+        this.dedupeJars = dedupeJars;
+        this.strippedJarsFolder = strippedJarsFolder;
+        this.strippedJarEntries = STRIPPED_JAR_ENTRIES.stream().map(PayloadShrinker::toRegex).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the entries of the package, sorted by their names relative to the folder, with the file each one is
+     * read from. Stripped jars are read from copies in the stripped jars folder, the configuration folder is never
+     * modified, since its files may be links to the build output.
+     */
+    public SortedMap<String, Path> shrink(Path folder, Predicate<Path> filter) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(folder, Integer.MAX_VALUE)) {
+            files = walk.filter(file -> !file.equals(folder)).filter(filter).collect(Collectors.toList());
+        }
+
+        SortedMap<String, Path> entries = new TreeMap<>();
+        for (Path file : files) {
+            String name = folder.relativize(file).toString().replace('\\', '/');
+            String rule = getExcludingRule(name);
+            if (rule != null) {
+                addSaving(rule, file);
+            } else {
+                entries.put(name, file);
+            }
+        }
+
+        if (dedupeJars) {
+            // the first jar in name order is kept, the class path of the handler uses wildcards and does not care
+            Map<String, String> jarsByHash = new HashMap<>();
+            for (String name : new ArrayList<>(entries.keySet())) {
+                Path file = entries.get(name);
+                if (isJar(name, file) && jarsByHash.putIfAbsent(hash(file), name) != null) {
+                    addSaving(DUPLICATE_JARS_RULE, file);
+                    entries.remove(name);
+                }
+            }
+        }
+
+        if (strippedJarsFolder != null) {
+            for (Map.Entry<String, Path> entry : entries.entrySet()) {
+                if (isJar(entry.getKey(), entry.getValue())) {
+                    Path stripped = strip(entry.getValue());
+                    long saved = Files.size(entry.getValue()) - Files.size(stripped);
+                    if (saved > 0) {
+                        long[] saving = savings.computeIfAbsent(STRIP_JARS_RULE, rule -> new long[2]);
+                        saving[0]++;
+                        saving[1] += saved;
+                        entry.setValue(stripped);
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the number of files and the bytes each rule removed from the package, before compression.
+     */
+    public Map<String, long[]> getSavings() {
+        return savings;
+    }
+
+    /**
+     * Returns the content hashes of the files that were hashed while selecting the entries, e.g. the jars compared
+     * for duplicates, keyed by the file.
+     */
+    public Map<Path, String> getHashes() {
+        return hashes;
+    }
+
+    private String hash(Path file) throws IOException {
+        String hash = hashes.get(file);
+        if (hash == null) {
+            hash = Commons.hash(file);
+            hashes.put(file, hash);
+        }
+        return hash;
+    }
+
+    private String getExcludingRule(String name) {
+        for (Map.Entry<String, Pattern> exclude : excludes.entrySet()) {
+            if (exclude.getValue().matcher(name).matches()) {
+                boolean included = includes.values().stream().anyMatch(include -> include.matcher(name).matches());
+                return included ? null : "exclude " + exclude.getKey();
+            }
+        }
+        return null;
+    }
+
+    private void addSaving(String rule, Path file) throws IOException {
+        long[] saving = savings.computeIfAbsent(rule, key -> new long[2]);
+        saving[0]++;
+        saving[1] += Files.isRegularFile(file) ? Files.size(file) : 0;
+    }
+
+    private Path strip(Path jar) throws IOException {
+        // the stripped copy is named by the hash of the original, so it is only created once per jar version
+        Path stripped = strippedJarsFolder.resolve(hash(jar) + ".jar");
+        if (Files.exists(stripped)) {
+            return stripped;
+        }
+        Files.createDirectories(strippedJarsFolder);
+        Path temporary = Files.createTempFile(strippedJarsFolder, "strip", ".tmp");
+        try (ZipFile in = new ZipFile(jar.toFile());
+                ZipArchiveOutputStream out = new ZipArchiveOutputStream(temporary.toFile())) {
+            // the entries are copied without decompressing them
+            in.copyRawEntries(out, entry -> strippedJarEntries.stream()
+                    .noneMatch(pattern -> pattern.matcher(entry.getName()).matches()));
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw new IOException("Could not strip " + jar, e);
+        }
+        Files.move(temporary, stripped);
+        return stripped;
+    }
+
+    private static boolean isJar(String name, Path file) {
+        return name.endsWith(".jar") && Files.isRegularFile(file);
+    }
+
+    private static Map<String, Pattern> compile(List<String> patterns) {
+        Map<String, Pattern> compiled = new LinkedHashMap<>();
+        if (patterns != null) {
+            patterns.stream().map(String::trim).filter(pattern -> !pattern.isEmpty())
+                    .forEach(pattern -> compiled.put(pattern, toRegex(pattern)));
+        }
+        return compiled;
+    }
+
+    private static Pattern toRegex(String glob) {
+        // `**/` matches any number of folders, `**` anything, `*` anything but a slash and `?` a single character;
+        // a pattern that matches a folder matches everything in it as well
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (glob.startsWith("**/", i)) {
+                regex.append("(?:.*/)?");
+                i += 2;
+            } else if (glob.startsWith("**", i)) {
+                regex.append(".*");
+                i++;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex + "(?:/.*)?");
+    }
+
+}
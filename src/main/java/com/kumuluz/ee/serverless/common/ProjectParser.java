@@ -1,15 +1,24 @@
 package com.kumuluz.ee.serverless.common;
 
 import com.kumuluz.ee.serverless.common.enums.RestMethodEnum;
+import com.kumuluz.ee.serverless.common.pojo.IndexedClass;
 import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import io.github.classgraph.AnnotationInfo;
 import io.github.classgraph.ClassGraph;
-import io.github.classgraph.ClassInfoList;
+import io.github.classgraph.ClassInfo;
+import io.github.classgraph.MethodInfo;
 import io.github.classgraph.ScanResult;
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.project.MavenProject;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author Boris Radovic
@@ -21,54 +30,238 @@ public class ProjectParser {
     private final static String JAX_RS_PACKAGE = "javax.ws.rs.";
     private final static String PATH_ANNOTATION = JAX_RS_PACKAGE + "Path";
     private final static String APPLICATION_PATH_ANNOTATION = JAX_RS_PACKAGE + "ApplicationPath";
+    private final static String PROVIDER_ANNOTATION = JAX_RS_PACKAGE + "ext.Provider";
+    private final static String CLASS_FILE_EXTENSION = ".class";
+    public final static String INDEX_FILE = "azf-endpoints.index";
+    private final static Map<String, RestMethodEnum> HTTP_METHOD_ANNOTATIONS = Arrays.stream(RestMethodEnum.values())
+            .collect(Collectors.toMap(method -> JAX_RS_PACKAGE + method.name(), method -> method));
 
-    public static List<RestEndpoint> getEndpoints(MavenProject project) {
-        // This method scans the project and returns all the endpoints that are present in the project
+    public static List<RestEndpoint> getEndpoints(MavenProject project) throws IOException {
+        return getEndpoints(project, Runtime.getRuntime().availableProcessors());
+    }
 
-        ClassGraph clsGraph = new ClassGraph().overrideClasspath(project.getBuild().getDirectory());
+    public static List<RestEndpoint> getEndpoints(MavenProject project, int scanThreads) throws IOException {
+        // This method scans the project and returns all the endpoints that are present in the project.
+        return getEndpoints(getClasses(project, scanThreads));
+    }
 
-        // get list of all classes in project
+    public static List<RestEndpoint> getEndpoints(Collection<IndexedClass> classes) {
+        String baseUrl = getApplicationBaseUrl(classes);
         List<RestEndpoint> endpoints = new ArrayList<>();
-        try (ScanResult result = clsGraph.enableAllInfo().acceptPackages(project.getGroupId()).scan()) {
-            String baseUrl = getApplicationBaseUrl(result);
-            for (RestMethodEnum method :  RestMethodEnum.values()) {
-                addEndpointsToList(result, endpoints, method, baseUrl);
-            }
-        }
+        classes.forEach(indexedClass -> indexedClass.getEndpoints().forEach(endpoint -> {
+            endpoint.setBaseAppUrl(baseUrl);
+            endpoints.add(endpoint);
+        }));
         endpoints.sort(Comparator.comparing(RestEndpoint::toString));
         return endpoints;
     }
 
-    private static String getApplicationBaseUrl(ScanResult result) {
-        ClassInfoList classInfos = result.getClassesWithAnnotation(APPLICATION_PATH_ANNOTATION);
-        String baseUrl = classInfos.get(0).getAnnotationInfo(APPLICATION_PATH_ANNOTATION)
-                .getParameterValues().get("value").getValue().toString();
-        return baseUrl;
+    public static Collection<IndexedClass> getClasses(MavenProject project, int scanThreads) throws IOException {
+        return getClasses(project, scanThreads, false);
     }
 
-    private static void addEndpointsToList(ScanResult result, List<RestEndpoint> endpoints,
-                                           RestMethodEnum method, String baseAppUrl) {
-        ClassInfoList classInfos = result.getClassesWithMethodAnnotation(JAX_RS_PACKAGE + method.name());
-
-        classInfos.forEach(classInfo -> {
-            String classUrl = classInfo.hasAnnotation(PATH_ANNOTATION) ?
-                    classInfo.getAnnotationInfo(PATH_ANNOTATION).getParameterValues().get("value").getValue().toString() : "";
-            classInfo.getMethodInfo().forEach(methodInfo -> {
-                if (methodInfo.hasAnnotation(JAX_RS_PACKAGE + method.name())) {
-                    String methodUrl = methodInfo.hasAnnotation(PATH_ANNOTATION) ?
-                            methodInfo.getAnnotationInfo(PATH_ANNOTATION).getParameterValues().get("value").getValue().toString() : "";
+    public static Collection<IndexedClass> getClasses(MavenProject project, int scanThreads, boolean scanDependencies)
+            throws IOException {
+        // Returns the JAX-RS metadata of every project class. Only the class files that changed since the previous
+        // invocation are scanned, the rest is taken from the index. The classes of the resolved runtime dependencies
+        // in the project's packages are added if requested; the project classes come first.
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, scanThreads));
+        try {
+            List<IndexedClass> classes = new ArrayList<>(getClasses(project, executor, Math.max(1, scanThreads)));
+            if (scanDependencies) {
+                classes.addAll(getDependencyClasses(project, executor, Math.max(1, scanThreads)));
+            }
+            return classes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Collection<IndexedClass> getClasses(MavenProject project, ExecutorService executor, int scanThreads)
+            throws IOException {
+        Path classesFolder = Paths.get(project.getBuild().getOutputDirectory());
+        Path indexFile = Paths.get(project.getBuild().getDirectory(), INDEX_FILE);
+
+        Map<String, IndexedClass> previousIndex = EndpointIndex.load(indexFile);
+        Map<String, IndexedClass> index = new HashMap<>();
+        Map<String, String> changedClassFiles = new HashMap<>(); // class file -> hash
+
+        String packagePrefix = project.getGroupId() + ".";
+        Map<String, Future<String>> hashes = new HashMap<>();
+        for (Path file : getClassFiles(classesFolder)) {
+            String classFile = classesFolder.relativize(file).toString().replace('\\', '/');
+            if (getClassName(classFile).startsWith(packagePrefix)) {
+                hashes.put(classFile, executor.submit(() -> Commons.hash(file)));
+            }
+        }
+
+        for (Map.Entry<String, Future<String>> entry : hashes.entrySet()) {
+            String hash = getResult(entry.getValue());
+            IndexedClass cached = previousIndex.get(entry.getKey());
+            if (cached != null && cached.getHash().equals(hash)) {
+                index.put(entry.getKey(), cached);
+            } else {
+                changedClassFiles.put(entry.getKey(), hash);
+            }
+        }
+
+        if (!changedClassFiles.isEmpty()) {
+            index.putAll(scanClasses(classesFolder, changedClassFiles, executor, scanThreads));
+        }
+        if (!changedClassFiles.isEmpty() || index.size() != previousIndex.size()) {
+            EndpointIndex.save(indexFile, index);
+        }
+        return index.values();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<IndexedClass> getDependencyClasses(MavenProject project, ExecutorService executor,
+                                                           int scanThreads) throws IOException {
+        // archives are scanned once per reactor build, see ScanCache; folders are the output of modules of the same
+        // reactor that are not packaged yet, and are scanned every time since they may still change
+        String packagePrefix = project.getGroupId() + ".";
+        List<IndexedClass> classes = new ArrayList<>();
+        for (Artifact artifact : (Set<Artifact>) project.getArtifacts()) {
+            if (artifact.getFile() == null || Artifact.SCOPE_TEST.equals(artifact.getScope())
+                    || Artifact.SCOPE_PROVIDED.equals(artifact.getScope())
+                    || (artifact.getArtifactHandler() != null && !artifact.getArtifactHandler().isAddedToClasspath())) {
+                continue;
+            }
+            Path file = artifact.getFile().toPath();
+            if (Files.isDirectory(file)) {
+                classes.addAll(scanArchive(file, packagePrefix, executor, scanThreads));
+            } else if (Files.isRegularFile(file)) {
+                classes.addAll(ScanCache.get(file, packagePrefix,
+                        archive -> scanArchive(archive, packagePrefix, executor, scanThreads)));
+            }
+        }
+        return classes;
+    }
+
+    private static List<IndexedClass> scanArchive(Path archive, String packagePrefix, ExecutorService executor,
+                                                  int scanThreads) {
+        // only the classes that carry JAX-RS metadata are kept
+        List<IndexedClass> classes = new ArrayList<>();
+        ClassGraph clsGraph = new ClassGraph().overrideClasspath(archive.toString())
+                .enableClassInfo().enableMethodInfo().enableAnnotationInfo()
+                .acceptPackages(packagePrefix.substring(0, packagePrefix.length() - 1));
+        try (ScanResult result = clsGraph.scan(executor, scanThreads)) {
+            for (ClassInfo classInfo : result.getAllClasses()) {
+                if (!classInfo.getName().startsWith(packagePrefix)) {
+                    continue;
+                }
+                IndexedClass indexedClass = new IndexedClass();
+                indexedClass.setHash("");
+                indexedClass.setClassName(classInfo.getName());
+                addClassToIndex(classInfo, indexedClass);
+                if (indexedClass.getApplicationPath() != null || indexedClass.isResource() || indexedClass.isProvider()
+                        || !indexedClass.getEndpoints().isEmpty()) {
+                    classes.add(indexedClass);
+                }
+            }
+        }
+        return classes;
+    }
+
+    private static List<Path> getClassFiles(Path classesFolder) throws IOException {
+        if (!Files.isDirectory(classesFolder)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> walk = Files.walk(classesFolder)) {
+            return walk.filter(file -> file.toString().endsWith(CLASS_FILE_EXTENSION) && Files.isRegularFile(file))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String getResult(Future<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while hashing class files", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not hash class file", e.getCause());
+        }
+    }
+
+    private static String getClassName(String classFile) {
+        return classFile.substring(0, classFile.length() - CLASS_FILE_EXTENSION.length()).replace('/', '.');
+    }
+
+    private static Map<String, IndexedClass> scanClasses(Path classesFolder, Map<String, String> classFiles,
+                                                         ExecutorService executor, int scanThreads) {
+        // scans only the given class files and returns the index entries for them; the class graph is walked once
+        // and no class is loaded, so static initializers of the project classes never run
+        Map<String, IndexedClass> scanned = new HashMap<>();
+        Map<String, IndexedClass> byClassName = new HashMap<>();
+        classFiles.forEach((classFile, hash) -> {
+            String className = getClassName(classFile);
+            IndexedClass indexedClass = new IndexedClass();
+            indexedClass.setHash(hash);
+            indexedClass.setClassName(className);
+            indexedClass.setSimpleClassName(className.substring(className.lastIndexOf('.') + 1));
+            scanned.put(classFile, indexedClass);
+            byClassName.put(className, indexedClass);
+        });
+
+        ClassGraph clsGraph = new ClassGraph().overrideClasspath(classesFolder.toString())
+                .enableClassInfo().enableMethodInfo().enableAnnotationInfo()
+                .acceptClasses(byClassName.keySet().toArray(new String[0]));
+        try (ScanResult result = clsGraph.scan(executor, scanThreads)) {
+            for (ClassInfo classInfo : result.getAllClasses()) {
+                IndexedClass indexedClass = byClassName.get(classInfo.getName());
+                if (indexedClass != null) {
+                    addClassToIndex(classInfo, indexedClass);
+                }
+            }
+        }
+        return scanned;
+    }
+
+    private static void addClassToIndex(ClassInfo classInfo, IndexedClass indexedClass) {
+        indexedClass.setSimpleClassName(classInfo.getSimpleName());
+        if (classInfo.hasAnnotation(APPLICATION_PATH_ANNOTATION)) {
+            indexedClass.setApplicationPath(getAnnotationValue(classInfo.getAnnotationInfo(APPLICATION_PATH_ANNOTATION)));
+        }
+        boolean concrete = !classInfo.isInterface() && !classInfo.isAbstract() && !classInfo.isAnnotation();
+        indexedClass.setResource(concrete && classInfo.hasAnnotation(PATH_ANNOTATION));
+        indexedClass.setProvider(concrete && classInfo.hasAnnotation(PROVIDER_ANNOTATION));
+
+        String classUrl = getAnnotationValue(classInfo.getAnnotationInfo(PATH_ANNOTATION));
+        for (MethodInfo methodInfo : classInfo.getMethodInfo()) {
+            String methodUrl = getAnnotationValue(methodInfo.getAnnotationInfo(PATH_ANNOTATION));
+            int endpointCount = indexedClass.getEndpoints().size();
+            for (AnnotationInfo annotationInfo : methodInfo.getAnnotationInfo()) {
+                RestMethodEnum method = HTTP_METHOD_ANNOTATIONS.get(annotationInfo.getName());
+                if (method != null) {
                     RestEndpoint restEndpoint = new RestEndpoint();
                     restEndpoint.setRestMethodEnum(method);
                     restEndpoint.setMethodName(methodInfo.getName());
-                    restEndpoint.setBaseAppUrl(baseAppUrl);
-                    restEndpoint.setClazz(classInfo.loadClass());
+                    restEndpoint.setClassName(indexedClass.getClassName());
+                    restEndpoint.setSimpleClassName(indexedClass.getSimpleClassName());
                     restEndpoint.setMethodUrl(methodUrl);
                     restEndpoint.setClassUrl(classUrl);
-                    endpoints.add(restEndpoint);
+                    indexedClass.getEndpoints().add(restEndpoint);
                 }
-            });
-        });
+            }
+            if (indexedClass.getEndpoints().size() == endpointCount && methodInfo.hasAnnotation(PATH_ANNOTATION)) {
+                // a sub-resource locator, the endpoints below it are only known at runtime
+                indexedClass.getLocatorUrls().add(classUrl + "/" + methodUrl);
+            }
+        }
+    }
+
+    private static String getAnnotationValue(AnnotationInfo annotationInfo) {
+        return annotationInfo != null ? annotationInfo.getParameterValues().get("value").getValue().toString() : "";
+    }
 
+    private static String getApplicationBaseUrl(Collection<IndexedClass> index) {
+        return index.stream()
+                .map(IndexedClass::getApplicationPath)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No class annotated with @" + APPLICATION_PATH_ANNOTATION));
     }
 
 }
@@ -0,0 +1,83 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.kumuluz.ee.serverless.common.pojo.IndexedClass;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the JAX-RS classes found by the build-time scan into the compiled classes, as a properties file that the
+ * application can read to register its resources and providers explicitly, instead of having Jersey scan the class
+ * path on the first request.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class ResourceIndex {
+
+    public static final String INDEX_FILE = "META-INF/azf/jaxrs.properties";
+    public static final String JERSEY_CLASSNAMES_PROPERTY = "jersey.config.server.provider.classnames";
+
+    /**
+     * Writes the index into the given classes folder. The file is left untouched when its content did not change, so
+     * that it does not invalidate the packaged jar or the staged code. Returns true if the file was written.
+     */
+    public static boolean write(Path classesFolder, Collection<IndexedClass> classes) throws IOException {
+        return write(classesFolder, classes, Collections.emptyList());
+    }
+
+    /**
+     * Writes the index with additional providers that are not part of the project sources, such as the route dispatch
+     * filter.
+     */
+    public static boolean write(Path classesFolder, Collection<IndexedClass> classes,
+                                Collection<String> additionalProviders) throws IOException {
+        String application = classes.stream()
+                .filter(indexedClass -> indexedClass.getApplicationPath() != null)
+                .map(IndexedClass::getClassName)
+                .sorted()
+                .findFirst()
+                .orElse("");
+        List<String> resources = getClassNames(classes, IndexedClass::isResource);
+        List<String> providers = getClassNames(classes, IndexedClass::isProvider);
+        providers.addAll(additionalProviders);
+        List<String> registered = getClassNames(classes, c -> c.isResource() || c.isProvider());
+        registered.addAll(additionalProviders);
+
+        StringBuilder content = new StringBuilder();
+        content.append("# Generated by the serverless-maven-plugin, do not edit\n");
+        content.append("application=").append(application).append('\n');
+        content.append("resources=").append(String.join(",", resources)).append('\n');
+        content.append("providers=").append(String.join(",", providers)).append('\n');
+        // the same classes under the name Jersey reads from the application properties
+        content.append(JERSEY_CLASSNAMES_PROPERTY).append('=')
+                .append(String.join(",", registered)).append('\n');
+
+        Path indexFile = classesFolder.resolve(INDEX_FILE);
+        byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+        if (Files.exists(indexFile) && Arrays.equals(Files.readAllBytes(indexFile), bytes)) {
+            return false;
+        }
+        Files.createDirectories(indexFile.getParent());
+        Files.write(indexFile, bytes);
+        return true;
+    }
+
+    private static List<String> getClassNames(Collection<IndexedClass> classes, Predicate<IndexedClass> filter) {
+        return classes.stream()
+                .filter(filter)
+                .map(IndexedClass::getClassName)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+}
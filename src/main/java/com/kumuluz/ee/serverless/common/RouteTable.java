@@ -0,0 +1,152 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.kumuluz.ee.serverless.common.pojo.IndexedClass;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import com.kumuluz.ee.serverless.runtime.RouteDispatchFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the endpoints found by the build-time scan into a trie of path segments, relative to the application path,
+ * and writes it into the compiled classes together with the {@link RouteDispatchFilter} that evaluates it at runtime.
+ * Literal segments are matched by hash lookup and plain `{name}` parameters match any segment. Templates the trie
+ * cannot evaluate exactly, such as parameters with a regular expression, and sub-resource locators mark their node as
+ * open, which leaves everything below it to Jersey.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class RouteTable {
+
+    public static final String TABLE_FILE = RouteDispatchFilter.TABLE_RESOURCE.substring(1);
+    public static final String FILTER_CLASS = RouteDispatchFilter.class.getName();
+    private static final String FILTER_CLASS_FILE = FILTER_CLASS.replace('.', '/');
+    private static final List<String> FILTER_CLASS_FILES = Arrays.asList(FILTER_CLASS_FILE + ".class",
+            FILTER_CLASS_FILE + "$Node.class");
+    private static final Pattern PLAIN_PARAMETER = Pattern.compile("\\{\\s*[\\w.-]+\\s*}");
+
+    private static class Node {
+        final String kind;
+        final String segment;
+        final Map<String, Node> children = new TreeMap<>(); // sorted, so that the table is reproducible
+        final Map<String, String[]> targets = new TreeMap<>(); // method -> template, resource method
+        boolean open;
+
+        Node(String kind, String segment) {
+            this.kind = kind;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * Writes the route table and the filter classes into the given classes folder. Files are left untouched when
+     * their content did not change. Returns true if any file was written.
+     */
+    public static boolean write(Path classesFolder, Collection<IndexedClass> classes) throws IOException {
+        Node root = new Node(RouteDispatchFilter.LITERAL, "");
+        for (IndexedClass indexedClass : classes) {
+            // endpoints of classes without @Path are reached through sub-resource locators only
+            if (!indexedClass.isResource()) {
+                continue;
+            }
+            for (RestEndpoint endpoint : indexedClass.getEndpoints()) {
+                String template = String.join("/", getSegments(endpoint.getClassUrl() + "/" + endpoint.getMethodUrl()));
+                Node node = insert(root, template);
+                node.targets.putIfAbsent(endpoint.getRestMethodEnum().name(),
+                        new String[]{template, endpoint.getClassName() + "#" + endpoint.getMethodName()});
+            }
+            for (String locatorUrl : indexedClass.getLocatorUrls()) {
+                insert(root, locatorUrl).open = true;
+            }
+        }
+
+        StringBuilder content = new StringBuilder();
+        content.append("# Generated by the serverless-maven-plugin, do not edit\n");
+        content.append("# parent\tkind\tsegment\topen\t[method\ttemplate\tresource method]...\n");
+        appendNode(content, root, -1, new int[]{0});
+
+        boolean written = Commons.writeIfChanged(classesFolder.resolve(TABLE_FILE),
+                content.toString().getBytes(StandardCharsets.UTF_8));
+        for (String classFile : FILTER_CLASS_FILES) {
+            written |= Commons.writeIfChanged(classesFolder.resolve(classFile), Commons.readPluginClassFile(classFile));
+        }
+        return written;
+    }
+
+    /**
+     * Removes the route table and the filter classes from the given classes folder, e.g. after the route table was
+     * turned off. Returns true if any file was removed.
+     */
+    public static boolean remove(Path classesFolder) throws IOException {
+        boolean removed = Files.deleteIfExists(classesFolder.resolve(TABLE_FILE));
+        for (String classFile : FILTER_CLASS_FILES) {
+            removed |= Files.deleteIfExists(classesFolder.resolve(classFile));
+        }
+        return removed;
+    }
+
+    private static Node insert(Node root, String template) {
+        Node node = root;
+        for (String segment : getSegments(template)) {
+            if (node.open) {
+                break;
+            }
+            if (!segment.contains("{")) {
+                node = node.children.computeIfAbsent(RouteDispatchFilter.LITERAL + segment,
+                        key -> new Node(RouteDispatchFilter.LITERAL, segment));
+            } else if (PLAIN_PARAMETER.matcher(segment).matches()) {
+                node = node.children.computeIfAbsent(RouteDispatchFilter.PARAMETER,
+                        key -> new Node(RouteDispatchFilter.PARAMETER, "{}"));
+            } else {
+                // a regular expression may match any number of segments, even none
+                node.open = true;
+                break;
+            }
+        }
+        return node;
+    }
+
+    private static List<String> getSegments(String template) {
+        // splits at the slashes outside of the parameters, whose regular expressions may contain slashes as well
+        List<String> segments = new ArrayList<>();
+        StringBuilder segment = new StringBuilder();
+        int depth = 0;
+        for (char c : template.toCharArray()) {
+            if (c == '/' && depth == 0) {
+                if (segment.length() > 0) {
+                    segments.add(segment.toString());
+                    segment.setLength(0);
+                }
+                continue;
+            }
+            depth += c == '{' ? 1 : c == '}' ? -1 : 0;
+            segment.append(c);
+        }
+        if (segment.length() > 0) {
+            segments.add(segment.toString());
+        }
+        return segments;
+    }
+
+    private static void appendNode(StringBuilder content, Node node, int parent, int[] nextIndex) {
+        // pre-order, so that every parent is listed before its children
+        int index = nextIndex[0]++;
+        content.append(parent).append('\t').append(node.kind).append('\t').append(node.segment).append('\t')
+                .append(node.open ? RouteDispatchFilter.OPEN : "0");
+        if (!node.open) {
+            node.targets.forEach((method, target) ->
+                    content.append('\t').append(method).append('\t').append(target[0]).append('\t').append(target[1]));
+        }
+        content.append('\n');
+        if (!node.open) {
+            node.children.values().forEach(child -> appendNode(content, child, index, nextIndex));
+        }
+    }
+
+}
@@ -0,0 +1,266 @@
+package com.kumuluz.ee.serverless.common;
+
+import java.io.*;
+import java.lang.module.ModuleDescriptor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Builds a trimmed Java runtime for the application: the class files of the code and its dependencies are analysed
+ * for the JDK modules they use, the way `jdeps --print-module-deps` does, and `jlink` links a runtime image with only
+ * these modules. `jlink` of the JDK running the build is used, the modules can be taken from another JDK of the same
+ * version, e.g. one for the platform of the function app.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class RuntimeLinker {
+
+    private static final String STAMP_FILE = ".azf-runtime";
+    private static final String CLASS_FILE_EXTENSION = ".class";
+    private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+    private static final Pattern TYPE_REFERENCE = Pattern.compile("L([\\w/$]+)[;<]");
+    private static final String JMOD_DESCRIPTOR = "classes/module-info.class";
+    private static final long TOOL_TIMEOUT_MINUTES = 10;
+
+    private final Path javaHome; // JDK the modules are linked from
+
+    public RuntimeLinker(Path javaHome) {
+        this.javaHome = javaHome;
+    }
+
+    /**
+     * Returns the JDK modules that contain the packages referenced by the classes of the given class folders and jars,
+     * including the jars nested in them, like the dependencies in the jar of the KumuluzEE packaging. The modules they
+     * require are added by `jlink`.
+     */
+    public SortedSet<String> findModules(List<Path> roots) throws IOException {
+        Map<String, String> packageModules = getPackageModules();
+
+        Set<String> packages = new HashSet<>();
+        for (Path root : roots) {
+            if (Files.isDirectory(root)) {
+                List<Path> classFiles;
+                try (Stream<Path> walk = Files.walk(root)) {
+                    classFiles = walk.filter(file -> file.toString().endsWith(CLASS_FILE_EXTENSION))
+                            .collect(Collectors.toList());
+                }
+                for (Path classFile : classFiles) {
+                    try (InputStream in = Files.newInputStream(classFile)) {
+                        addReferencedPackages(in, packages);
+                    }
+                }
+            } else if (Files.isRegularFile(root)) {
+                try (InputStream in = Files.newInputStream(root)) {
+                    addJarPackages(in, packages);
+                }
+            }
+        }
+
+        SortedSet<String> modules = new TreeSet<>();
+        packages.forEach(pkg -> {
+            String module = packageModules.get(pkg);
+            if (module != null) {
+                modules.add(module);
+            }
+        });
+        modules.add("java.base");
+        return modules;
+    }
+
+    private Map<String, String> getPackageModules() throws IOException {
+        // the descriptor of every JMOD lists all the packages of the module; JMOD files are zip files with a header
+        Map<String, String> packageModules = new HashMap<>();
+        List<Path> jmods;
+        try (Stream<Path> files = Files.list(getJmodsFolder())) {
+            jmods = files.filter(file -> file.toString().endsWith(".jmod")).collect(Collectors.toList());
+        }
+        for (Path jmod : jmods) {
+            try (ZipFile zip = new ZipFile(jmod.toFile())) {
+                ZipEntry descriptorEntry = zip.getEntry(JMOD_DESCRIPTOR);
+                if (descriptorEntry != null) {
+                    try (InputStream in = zip.getInputStream(descriptorEntry)) {
+                        ModuleDescriptor descriptor = ModuleDescriptor.read(in);
+                        descriptor.packages().forEach(pkg -> packageModules.put(pkg, descriptor.name()));
+                    }
+                }
+            }
+        }
+        if (packageModules.isEmpty()) {
+            throw new IOException("No modules found in " + getJmodsFolder());
+        }
+        return packageModules;
+    }
+
+    private Path getJmodsFolder() throws IOException {
+        Path jmods = javaHome.resolve("jmods");
+        if (!Files.isDirectory(jmods)) {
+            throw new IOException("No jmods folder found in " + javaHome + ", a full JDK is required to link a runtime");
+        }
+        return jmods;
+    }
+
+    private static void addJarPackages(InputStream jar, Set<String> packages) throws IOException {
+        // reads the jar as a stream, so that nested jars are read without being extracted
+        JarInputStream in = new JarInputStream(jar);
+        JarEntry entry;
+        while ((entry = in.getNextJarEntry()) != null) {
+            String name = entry.getName();
+            if (name.endsWith(CLASS_FILE_EXTENSION) && !name.endsWith("module-info.class")) {
+                addReferencedPackages(in, packages);
+            } else if (name.endsWith(".jar")) {
+                addJarPackages(new NonClosingInputStream(in), packages);
+            }
+        }
+    }
+
+    private static void addReferencedPackages(InputStream classFile, Set<String> packages) throws IOException {
+        // the types a class uses are named in its constant pool, by the class entries and by the descriptors and
+        // signatures of fields, methods and instructions; like jdeps, only the packages of these types are relevant
+        DataInputStream in = new DataInputStream(new BufferedInputStream(classFile));
+        if (in.readInt() != CLASS_FILE_MAGIC) {
+            return;
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        int count = in.readUnsignedShort();
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // UTF-8, contains the names of classes and all descriptors
+                    String value = in.readUTF();
+                    Matcher matcher = TYPE_REFERENCE.matcher(value);
+                    while (matcher.find()) {
+                        addPackage(matcher.group(1), packages);
+                    }
+                    if (value.indexOf('/') > 0 && value.indexOf(';') < 0 && value.indexOf('(') < 0) {
+                        addPackage(value, packages); // internal name of a class entry
+                    }
+                    break;
+                case 7: case 8: case 16: case 19: case 20:
+                    in.skipBytes(2);
+                    break;
+                case 15:
+                    in.skipBytes(3);
+                    break;
+                case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                    in.skipBytes(4);
+                    break;
+                case 5: case 6:
+                    in.skipBytes(8);
+                    i++; // longs and doubles take two entries
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+    }
+
+    private static void addPackage(String internalName, Set<String> packages) {
+        int slash = internalName.lastIndexOf('/');
+        if (slash > 0) {
+            packages.add(internalName.substring(0, slash).replace('/', '.'));
+        }
+    }
+
+    private static class NonClosingInputStream extends FilterInputStream {
+
+        NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // the outer jar continues after the nested one
+        }
+    }
+
+    /**
+     * Links a runtime with the given modules into the output folder, unless the folder already contains a runtime
+     * linked with the same modules from the same JDK. Returns true if the runtime was linked.
+     */
+    public boolean link(Collection<String> modules, Path output) throws IOException, InterruptedException {
+        String stamp = javaHome.toAbsolutePath() + "\n" + getFeatureVersion() + "\n" + String.join(",", modules) + "\n";
+        Path stampFile = output.resolve(STAMP_FILE);
+        if (Files.isRegularFile(stampFile) && Files.readString(stampFile).equals(stamp)
+                && Files.exists(getJavaExecutable(output))) {
+            return false;
+        }
+
+        Commons.deleteRecursively(output);
+        List<String> command = new ArrayList<>();
+        command.add(getTool("jlink"));
+        command.addAll(Arrays.asList("--module-path", getJmodsFolder().toString()));
+        command.addAll(Arrays.asList("--add-modules", String.join(",", modules)));
+        // the module image is left uncompressed, compressed images are smaller but load classes slower
+        command.addAll(Arrays.asList("--strip-debug", "--no-header-files", "--no-man-pages"));
+        command.addAll(Arrays.asList("--output", output.toString()));
+        run(command);
+        if (isLinkingOwnPlatform()) {
+            // linked images have no default CDS archive of the JDK classes, which makes every start slower; it can
+            // only be dumped by a runtime that runs on the build platform
+            run(Arrays.asList(getJavaExecutable(output).toString(), "-Xshare:dump"));
+        }
+        Files.writeString(stampFile, stamp);
+        return true;
+    }
+
+    public static Path getJavaExecutable(Path runtime) {
+        return runtime.resolve("bin").resolve(Commons.isWindowsOs() ? "java.exe" : "java");
+    }
+
+    private boolean isLinkingOwnPlatform() throws IOException {
+        return Files.isSameFile(javaHome, Paths.get(System.getProperty("java.home")));
+    }
+
+    private int getFeatureVersion() throws IOException {
+        // the `release` file of the JDK contains e.g. JAVA_VERSION="17.0.2"
+        Path release = javaHome.resolve("release");
+        if (Files.isRegularFile(release)) {
+            for (String line : Files.readAllLines(release)) {
+                if (line.startsWith("JAVA_VERSION=")) {
+                    String version = line.substring("JAVA_VERSION=".length()).replace("\"", "");
+                    return Integer.parseInt(version.split("[.\\-+]")[0]);
+                }
+            }
+        }
+        throw new IOException("Could not determine the version of the JDK in " + javaHome);
+    }
+
+    private static String getTool(String name) {
+        // the tools of the JDK running the build, the modules of another JDK of the same version can be linked with them
+        return Paths.get(System.getProperty("java.home"), "bin", Commons.isWindowsOs() ? name + ".exe" : name).toString();
+    }
+
+    private static String run(List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            in.transferTo(output);
+        }
+        if (!process.waitFor(TOOL_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IOException(command.get(0) + " did not finish within " + TOOL_TIMEOUT_MINUTES + " minutes");
+        }
+        String result = output.toString(StandardCharsets.UTF_8);
+        if (process.exitValue() != 0) {
+            throw new IOException(String.format("%s failed with exit code %d: %s", command.get(0), process.exitValue(),
+                    result.trim()));
+        }
+        return result;
+    }
+
+}
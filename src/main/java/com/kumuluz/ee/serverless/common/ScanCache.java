@@ -0,0 +1,114 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.kumuluz.ee.serverless.common.pojo.IndexedClass;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Scan results of dependency archives, shared by all the modules of a reactor build. The plugin classes are loaded
+ * once per build, so modules depending on the same archive scan it only once, also when they are built concurrently:
+ * the first module scans it and the others wait for its result. An entry is only reused while the archive keeps its
+ * size and modification time. The cache holds the archives used last, up to a fixed number, since a build process
+ * such as the Maven daemon may keep the plugin classes loaded across many builds. Only the scan of the dependencies,
+ * turned on with `scanDependencies`, uses the cache; the classes of the project are always scanned.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class ScanCache {
+
+    private static final int MAX_ENTRIES = 512;
+
+    // archive and package prefix -> scan, in the order of their last use; guarded by itself
+    private static final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public interface Scanner {
+        List<IndexedClass> scan(Path archive) throws IOException;
+    }
+
+    private static class Entry {
+        final String stamp;
+        final CompletableFuture<List<IndexedClass>> classes = new CompletableFuture<>();
+
+        Entry(String stamp) {
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * Returns the classes of the given archive, scanning it only if no other module did so before. The returned
+     * classes are copies, so callers may modify them.
+     */
+    public static List<IndexedClass> get(Path archive, String packagePrefix, Scanner scanner) throws IOException {
+        String key = archive.toAbsolutePath().normalize() + "!" + packagePrefix;
+        String stamp = Files.size(archive) + ":" + Files.getLastModifiedTime(archive).toMillis();
+
+        Entry created = new Entry(stamp);
+        Entry entry;
+        synchronized (entries) {
+            // only looks the entry up, the scan runs outside of the lock
+            entry = entries.compute(key, (k, existing) ->
+                    existing != null && existing.stamp.equals(stamp) && !existing.classes.isCompletedExceptionally()
+                            ? existing : created);
+        }
+        if (entry == created) {
+            try {
+                created.classes.complete(scanner.scan(archive));
+            } catch (IOException | RuntimeException e) {
+                created.classes.completeExceptionally(e);
+            }
+        }
+
+        try {
+            return copy(entry.classes.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the scan of " + archive, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not scan " + archive, e.getCause());
+        }
+    }
+
+    private static List<IndexedClass> copy(List<IndexedClass> classes) {
+        // the endpoints get the base URL of the application they are deployed with, which differs between modules
+        List<IndexedClass> copies = new ArrayList<>(classes.size());
+        for (IndexedClass indexedClass : classes) {
+            IndexedClass copy = new IndexedClass();
+            copy.setHash(indexedClass.getHash());
+            copy.setClassName(indexedClass.getClassName());
+            copy.setSimpleClassName(indexedClass.getSimpleClassName());
+            copy.setApplicationPath(indexedClass.getApplicationPath());
+            copy.setResource(indexedClass.isResource());
+            copy.setProvider(indexedClass.isProvider());
+            copy.getLocatorUrls().addAll(indexedClass.getLocatorUrls());
+            for (RestEndpoint endpoint : indexedClass.getEndpoints()) {
+                RestEndpoint endpointCopy = new RestEndpoint();
+                endpointCopy.setRestMethodEnum(endpoint.getRestMethodEnum());
+                endpointCopy.setMethodName(endpoint.getMethodName());
+                endpointCopy.setClassName(endpoint.getClassName());
+                endpointCopy.setSimpleClassName(endpoint.getSimpleClassName());
+                endpointCopy.setClassUrl(endpoint.getClassUrl());
+                endpointCopy.setMethodUrl(endpoint.getMethodUrl());
+                copy.getEndpoints().add(endpointCopy);
+            }
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+}
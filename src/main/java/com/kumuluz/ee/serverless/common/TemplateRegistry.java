@@ -0,0 +1,48 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles each template once and renders it into a per-thread buffer that is reused across invocations.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class TemplateRegistry {
+
+    private static final MustacheFactory mustacheFactory = new DefaultMustacheFactory();
+    private static final Map<String, Mustache> templates = new ConcurrentHashMap<>();
+    private static final Map<String, String> rawTemplates = new ConcurrentHashMap<>();
+    private static final ThreadLocal<StringWriter> buffers = ThreadLocal.withInitial(() -> new StringWriter(2_048));
+
+    public static String render(String templatePath, Object scope) throws IOException {
+        Mustache mustache = templates.computeIfAbsent(templatePath, mustacheFactory::compile);
+        StringWriter writer = buffers.get();
+        writer.getBuffer().setLength(0);
+        mustache.execute(writer, scope).flush();
+        return writer.toString();
+    }
+
+    public static String read(String templatePath) throws IOException {
+        // returns the template as is, without rendering it
+        String template = rawTemplates.get(templatePath);
+        if (template == null) {
+            try (InputStream in = TemplateRegistry.class.getResourceAsStream("/" + templatePath.replace('\\', '/'))) {
+                template = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            rawTemplates.put(templatePath, template);
+        }
+        return template;
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.kumuluz.ee.serverless.common;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Creates a zip archive of a folder by compressing the entries on a pool of workers (scatter) and appending the
+ * already compressed entries to the archive in a deterministic order (gather). Files that are already compressed,
+ * such as jars, are stored without compressing them again.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class ZipPackager {
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jar", "war", "ear", "zip", "gz", "tgz", "bz2", "xz", "png", "jpg", "jpeg", "gif", "woff", "woff2"));
+    private static final int BUFFER_SIZE = 64 * 1_024;
+    private static final int EXECUTABLE_FILE_MODE = 0100755; // regular file, rwxr-xr-x
+    // zip entry times are local times, so the time is taken in the local zone to give the same entries everywhere
+    private static final long REPRODUCIBLE_TIME = LocalDateTime.of(1980, 2, 1, 0, 0)
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    private final int threads;
+    private final int compressionLevel;
+    private final boolean reproducible; // entries get a fixed time, so the same files always give the same archive
+
+    public ZipPackager(int threads, int compressionLevel) {
+        this(threads, compressionLevel, false);
+    }
+
+    public ZipPackager(int threads, int compressionLevel, boolean reproducible) {
+        this.threads = Math.max(1, threads);
+        this.compressionLevel = compressionLevel;
+        this.reproducible = reproducible;
+    }
+
+    public void zip(Path folder, Predicate<Path> filter, OutputStream output) throws IOException {
+        SortedMap<String, Path> entries = new TreeMap<>();
+        try (Stream<Path> walk = Files.walk(folder, Integer.MAX_VALUE)) {
+            walk.filter(file -> !file.equals(folder))
+                    .filter(filter)
+                    .forEach(file -> entries.put(folder.relativize(file).toString().replace('\\', '/'), file));
+        }
+        zip(entries, output);
+    }
+
+    /**
+     * Zips the given entries in their iteration order, each read from the file it is mapped to. The output is closed
+     * once the archive is complete. If an entry fails, the archive is left without its central directory and the
+     * output is left open, so that a truncated archive is never mistaken for a complete one.
+     */
+    public void zip(Map<String, Path> entries, OutputStream output) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // not closed on failure, since closing finishes the archive
+        ZipArchiveOutputStream zipOut = new ZipArchiveOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        try {
+            // only a bounded window of entries is compressed ahead of the writer, which bounds the memory usage
+            int window = threads * 2;
+            Deque<Future<PreparedEntry>> pending = new ArrayDeque<>();
+            Iterator<Map.Entry<String, Path>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext() || !pending.isEmpty()) {
+                while (iterator.hasNext() && pending.size() < window) {
+                    Map.Entry<String, Path> entry = iterator.next();
+                    pending.add(executor.submit(() -> prepareEntry(entry.getKey(), entry.getValue())));
+                }
+                writeEntry(zipOut, getResult(pending.poll()));
+            }
+            zipOut.close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static boolean isCompressed(Path file) {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private PreparedEntry prepareEntry(String name, Path file) throws IOException {
+        PreparedEntry prepared = new PreparedEntry();
+        prepared.file = file;
+
+        if (Files.isDirectory(file)) {
+            prepared.entry = new ZipArchiveEntry(name + "/");
+            if (reproducible) {
+                prepared.entry.setTime(REPRODUCIBLE_TIME);
+            }
+            prepared.entry.setMethod(ZipEntry.STORED);
+            prepared.entry.setSize(0);
+            prepared.entry.setCompressedSize(0);
+            prepared.entry.setCrc(0);
+            prepared.data = new byte[0];
+            return prepared;
+        }
+
+        prepared.entry = new ZipArchiveEntry(name);
+        prepared.entry.setTime(reproducible ? REPRODUCIBLE_TIME : Files.getLastModifiedTime(file).toMillis());
+        if (!Commons.isWindowsOs() && Files.isExecutable(file)) {
+            // keeps the executables of a linked runtime executable when the package is extracted on Linux
+            prepared.entry.setUnixMode(EXECUTABLE_FILE_MODE);
+        }
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length;
+
+        if (isCompressed(file) || compressionLevel == Deflater.NO_COMPRESSION) {
+            // stored entries are copied from the file by the writer, here only the checksum is computed
+            try (InputStream in = Files.newInputStream(file)) {
+                while ((length = in.read(buffer)) >= 0) {
+                    crc.update(buffer, 0, length);
+                    size += length;
+                }
+            }
+            prepared.entry.setMethod(ZipEntry.STORED);
+            prepared.entry.setCompressedSize(size);
+        } else {
+            Deflater deflater = new Deflater(compressionLevel, true);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (InputStream in = Files.newInputStream(file);
+                    DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater, BUFFER_SIZE)) {
+                while ((length = in.read(buffer)) >= 0) {
+                    crc.update(buffer, 0, length);
+                    out.write(buffer, 0, length);
+                    size += length;
+                }
+            } finally {
+                deflater.end();
+            }
+            prepared.data = compressed.toByteArray();
+            prepared.entry.setMethod(ZipEntry.DEFLATED);
+            prepared.entry.setCompressedSize(prepared.data.length);
+        }
+        prepared.entry.setSize(size);
+        prepared.entry.setCrc(crc.getValue());
+        return prepared;
+    }
+
+    private static void writeEntry(ZipArchiveOutputStream zipOut, PreparedEntry prepared) throws IOException {
+        if (prepared.data != null) {
+            zipOut.addRawArchiveEntry(prepared.entry, new ByteArrayInputStream(prepared.data));
+        } else {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(prepared.file), BUFFER_SIZE)) {
+                zipOut.addRawArchiveEntry(prepared.entry, in);
+            }
+        }
+    }
+
+    private static PreparedEntry getResult(Future<PreparedEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing files", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not compress file", e.getCause());
+        }
+    }
+
+    private static class PreparedEntry {
+        private Path file;
+        private ZipArchiveEntry entry;
+        private byte[] data; // compressed content, null when the entry is stored and copied from the file
+    }
+
+}
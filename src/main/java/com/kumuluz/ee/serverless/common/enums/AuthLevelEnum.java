@@ -0,0 +1,12 @@
+package com.kumuluz.ee.serverless.common.enums;
+
+/**
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public enum AuthLevelEnum {
+    ANONYMOUS, // no key is required
+    FUNCTION, // a function or host key is required
+    ADMIN; // the master key is required
+}
@@ -0,0 +1,13 @@
+package com.kumuluz.ee.serverless.common.enums;
+
+/**
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public enum ConsolidationStrategyEnum {
+    NONE, // one function per resource method
+    CLASS, // one function per resource class, classes with the same path share it
+    PREFIX, // one function per first path segment after the application path
+    PROXY; // a single function for all the routes
+}
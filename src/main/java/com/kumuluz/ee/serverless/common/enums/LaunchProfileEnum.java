@@ -0,0 +1,31 @@
+package com.kumuluz.ee.serverless.common.enums;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public enum LaunchProfileEnum {
+    DEFAULT(),
+    // short-lived, small instances: interpreter and C1 only, single-threaded collector, no perf data file
+    COLD_START("-XX:+UseSerialGC", "-XX:TieredStopAtLevel=1", "-XX:-UsePerfData", "-Xss512k"),
+    // long-running, busy instances: parallel collector and most of the memory for the heap
+    THROUGHPUT("-XX:+UseParallelGC", "-XX:MaxRAMPercentage=75.0"),
+    // instances with little memory: small heap, code cache and thread stacks
+    LOW_MEMORY("-XX:+UseSerialGC", "-XX:MaxRAMPercentage=50.0", "-XX:ReservedCodeCacheSize=32m",
+            "-XX:TieredStopAtLevel=1", "-Xss256k");
+
+    private final List<String> jvmArguments;
+
+    LaunchProfileEnum(String... jvmArguments) {
+        this.jvmArguments = Collections.unmodifiableList(Arrays.asList(jvmArguments));
+    }
+
+    public List<String> getJvmArguments() {
+        return jvmArguments;
+    }
+}
@@ -0,0 +1,12 @@
+package com.kumuluz.ee.serverless.common.enums;
+
+/**
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public enum StagingStrategyEnum {
+    COPY,
+    HARDLINK,
+    SYMLINK;
+}
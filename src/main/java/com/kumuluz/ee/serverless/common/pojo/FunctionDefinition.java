@@ -0,0 +1,80 @@
+package com.kumuluz.ee.serverless.common.pojo;
+
+import com.kumuluz.ee.serverless.common.enums.AuthLevelEnum;
+import com.kumuluz.ee.serverless.common.enums.RestMethodEnum;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A function of the generated configuration, which forwards the requests matching its route and methods to the
+ * custom handler.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class FunctionDefinition {
+
+    private String name;
+    private String route;
+    private List<RestMethodEnum> methods = new ArrayList<>();
+    private List<RestEndpoint> endpoints = new ArrayList<>(); // the JAX-RS endpoints served by this function
+    private AuthLevelEnum authLevel = AuthLevelEnum.ANONYMOUS;
+
+    public FunctionDefinition() {
+        super();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public void setRoute(String route) {
+        this.route = route;
+    }
+
+    public List<RestMethodEnum> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(List<RestMethodEnum> methods) {
+        this.methods = methods;
+    }
+
+    public List<RestEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(List<RestEndpoint> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public AuthLevelEnum getAuthLevel() {
+        return authLevel;
+    }
+
+    public void setAuthLevel(AuthLevelEnum authLevel) {
+        this.authLevel = authLevel;
+    }
+
+    public String getMethodList() {
+        // the methods as the elements of a JSON array
+        return methods.stream().map(method -> "\"" + method.name() + "\"").collect(Collectors.joining(", "));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s %s (%d endpoints)", name, methods, route, endpoints.size());
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.kumuluz.ee.serverless.common.pojo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+public class IndexedClass {
+
+    private String hash;
+    private String className;
+    private String simpleClassName;
+    private String applicationPath; // null when the class is not annotated with @ApplicationPath
+    private boolean resource; // concrete class annotated with @Path
+    private boolean provider; // class annotated with @Provider
+    private List<RestEndpoint> endpoints = new ArrayList<>();
+    private List<String> locatorUrls = new ArrayList<>(); // @Path of the sub-resource locators, methods without an HTTP method
+
+    public IndexedClass() {
+        super();
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public void setClassName(String className) {
+        this.className = className;
+    }
+
+    public String getSimpleClassName() {
+        return simpleClassName;
+    }
+
+    public void setSimpleClassName(String simpleClassName) {
+        this.simpleClassName = simpleClassName;
+    }
+
+    public String getApplicationPath() {
+        return applicationPath;
+    }
+
+    public void setApplicationPath(String applicationPath) {
+        this.applicationPath = applicationPath;
+    }
+
+    public boolean isResource() {
+        return resource;
+    }
+
+    public void setResource(boolean resource) {
+        this.resource = resource;
+    }
+
+    public boolean isProvider() {
+        return provider;
+    }
+
+    public void setProvider(boolean provider) {
+        this.provider = provider;
+    }
+
+    public List<RestEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(List<RestEndpoint> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public List<String> getLocatorUrls() {
+        return locatorUrls;
+    }
+
+    public void setLocatorUrls(List<String> locatorUrls) {
+        this.locatorUrls = locatorUrls;
+    }
+
+}
@@ -2,6 +2,9 @@ package com.kumuluz.ee.serverless.common.pojo;
 
 import com.kumuluz.ee.serverless.common.enums.RestMethodEnum;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * @author Boris Radovic
  * @since 1.0.0
@@ -14,7 +17,8 @@ public class RestEndpoint {
     private String baseAppUrl;
     private String methodName;
     private RestMethodEnum restMethodEnum;
-    private Class clazz;
+    private String className;
+    private String simpleClassName;
 
     public RestEndpoint() {
         super();
@@ -60,21 +64,29 @@ public class RestEndpoint {
         this.restMethodEnum = restMethodEnum;
     }
 
-    public Class getClazz() {
-        return clazz;
+    public String getClassName() {
+        return className;
+    }
+
+    public void setClassName(String className) {
+        this.className = className;
+    }
+
+    public String getSimpleClassName() {
+        return simpleClassName;
     }
 
-    public void setClazz(Class clazz) {
-        this.clazz = clazz;
+    public void setSimpleClassName(String simpleClassName) {
+        this.simpleClassName = simpleClassName;
     }
 
     @Override
     public String toString() {
-        return String.format("%s (%s): %s %s", methodName, clazz.getName(), restMethodEnum.name(), getCompleteURL());
+        return String.format("%s (%s): %s %s", methodName, className, restMethodEnum.name(), getCompleteURL());
     }
 
     public String getFolderName() {
-        return this.clazz.getSimpleName() + "_" + restMethodEnum.name() + "_" + this.methodName;
+        return this.simpleClassName + "_" + restMethodEnum.name() + "_" + this.methodName;
     }
 
     public String getCompleteURL() {
@@ -86,4 +98,16 @@ public class RestEndpoint {
         return url;
     }
 
+    public List<String> getHintKeys() {
+        // keys under which per-endpoint settings of the plugin configuration are looked up, the most specific first
+        return Arrays.asList(simpleClassName + "." + methodName, className + "." + methodName, simpleClassName,
+                className);
+    }
+
+    public boolean isSafeToCall() {
+        // endpoints that can be called without side effects and without knowing any path parameter
+        return (restMethodEnum == RestMethodEnum.GET || restMethodEnum == RestMethodEnum.HEAD)
+                && !getCompleteURL().contains("{");
+    }
+
 }
@@ -0,0 +1,120 @@
+package com.kumuluz.ee.serverless.runtime;
+
+import org.glassfish.jersey.server.CloseableService;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of requests that the resource methods listed in the limit table generated at build time serve at
+ * the same time. Requests above the limit of their resource method are answered right away with 503 and a
+ * `Retry-After` header, instead of occupying the threads of the handler that the other endpoints need. The permit of a
+ * request is returned when Jersey completes the request, also when the resource method threw an exception that no
+ * exception mapper handles, in which case the response filters are not called.
+ * <p>
+ * This class is copied into the classes of the application by the plugin, it is not used by the plugin itself.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+@Provider
+@Priority(Priorities.AUTHENTICATION - 100) // before the filters of the application, a rejected request skips them
+public class ConcurrencyLimitFilter implements ContainerRequestFilter {
+
+    public static final String TABLE_RESOURCE = "/META-INF/azf/limits.idx";
+    public static final String RETRY_AFTER_SECONDS = "1";
+
+    private final Map<String, Semaphore> limits; // resource method -> permits
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Context
+    private CloseableService closeableService; // closed by Jersey when the request is completed
+
+    public ConcurrencyLimitFilter() {
+        limits = load();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (limits.isEmpty() || resourceInfo == null || closeableService == null) {
+            return;
+        }
+        Class<?> resourceClass = resourceInfo.getResourceClass();
+        Method resourceMethod = resourceInfo.getResourceMethod();
+        if (resourceClass == null || resourceMethod == null) {
+            return;
+        }
+        Semaphore permits = limits.get(resourceClass.getName() + "#" + resourceMethod.getName());
+        if (permits == null) {
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", RETRY_AFTER_SECONDS)
+                    .build());
+            return;
+        }
+        closeableService.add(new Permit(permits));
+    }
+
+    private static class Permit implements Closeable {
+
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(Semaphore permits) {
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    private static Map<String, Semaphore> load() {
+        // the table lists `resource method limit` per line, separated by a tab; without a table nothing is limited
+        try (InputStream in = ConcurrencyLimitFilter.class.getResourceAsStream(TABLE_RESOURCE)) {
+            if (in == null) {
+                return Collections.emptyMap();
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            Map<String, Semaphore> limits = new HashMap<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                limits.put(fields[0], new Semaphore(Integer.parseInt(fields[1])));
+            }
+            return limits;
+        } catch (IOException | RuntimeException e) {
+            return Collections.emptyMap();
+        }
+    }
+
+}
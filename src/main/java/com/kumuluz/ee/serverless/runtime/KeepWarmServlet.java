@@ -0,0 +1,40 @@
+package com.kumuluz.ee.serverless.runtime;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Answers the invocations of the keep-warm timer function. The Functions host forwards them to the custom handler as
+ * `POST /KeepWarm`, at the root of the handler and outside of the JAX-RS application path, so neither a resource nor a
+ * filter of the application sees them. The servlet is mapped to that exact path, which takes precedence over the
+ * Jersey servlet also when the application path is empty, and answers with an empty invocation result.
+ * <p>
+ * This class is copied into the classes of the application by the plugin, it is not used by the plugin itself.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+@WebServlet(KeepWarmServlet.PATH)
+public class KeepWarmServlet extends HttpServlet {
+
+    public static final String FUNCTION_NAME = "KeepWarm";
+    public static final String PATH = "/" + FUNCTION_NAME;
+
+    // a function without output bindings returns no outputs and no value
+    private static final byte[] INVOCATION_RESULT = "{\"Outputs\":{},\"Logs\":[],\"ReturnValue\":null}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.setContentLength(INVOCATION_RESULT.length);
+        response.getOutputStream().write(INVOCATION_RESULT);
+    }
+
+}
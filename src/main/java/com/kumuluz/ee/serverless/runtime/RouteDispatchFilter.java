@@ -0,0 +1,146 @@
+package com.kumuluz.ee.serverless.runtime;
+
+import javax.annotation.Priority;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.PathSegment;
+import javax.ws.rs.ext.Provider;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Looks every request up in the route table generated at build time, before Jersey matches it against the URI
+ * templates of all resources. Requests that resolve to an endpoint of the table get its template and resource method
+ * as request properties, e.g. to label metrics or logs before the request is matched. All requests are passed on to
+ * Jersey, which still matches them, also the ones not in the table: the table only contains the resources found by
+ * the build-time scan, not the ones registered at runtime, such as the resources of KumuluzEE extensions or of
+ * dependencies that were not scanned.
+ * <p>
+ * This class is copied into the classes of the application by the plugin, it is not used by the plugin itself.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+@Provider
+@PreMatching
+@Priority(Integer.MAX_VALUE) // after the filters that may rewrite the request URI
+public class RouteDispatchFilter implements ContainerRequestFilter {
+
+    public static final String TABLE_RESOURCE = "/META-INF/azf/routes.idx";
+    public static final String TEMPLATE_PROPERTY = "azf.route.template";
+    public static final String RESOURCE_PROPERTY = "azf.route.resource";
+
+    // node kinds and the open flag of the route table, see RouteTable in the plugin
+    public static final String LITERAL = "L";
+    public static final String PARAMETER = "P";
+    public static final String OPEN = "1";
+
+    private final Node root;
+
+    static class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        Node parameter;
+        boolean open; // a sub-resource locator or a template the trie cannot evaluate, Jersey decides
+        final Map<String, String[]> targets = new LinkedHashMap<>(); // method -> template, resource method
+    }
+
+    public RouteDispatchFilter() {
+        root = load();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (root == null) {
+            return;
+        }
+        List<String> segments = new ArrayList<>();
+        for (PathSegment segment : requestContext.getUriInfo().getPathSegments()) {
+            if (!segment.getPath().isEmpty()) {
+                segments.add(segment.getPath());
+            }
+        }
+
+        // a request without a match is left to Jersey as it is, it may be served by a resource that is not in the table
+        List<Node> matches = new ArrayList<>();
+        if (match(root, segments, 0, matches)) {
+            return;
+        }
+        String method = requestContext.getMethod();
+        for (Node node : matches) {
+            // Jersey answers HEAD with the GET method
+            String[] target = node.targets.get(method);
+            if (target == null && method.equals(HttpMethod.HEAD)) {
+                target = node.targets.get(HttpMethod.GET);
+            }
+            if (target != null) {
+                requestContext.setProperty(TEMPLATE_PROPERTY, target[0]);
+                requestContext.setProperty(RESOURCE_PROPERTY, target[1]);
+                return;
+            }
+        }
+    }
+
+    private static boolean match(Node node, List<String> segments, int index, List<Node> matches) {
+        // collects every node that matches the whole path, literals before parameters; returns true as soon as an open
+        // node is reached, since the request may be served then
+        if (node.open) {
+            return true;
+        }
+        if (index == segments.size()) {
+            if (!node.targets.isEmpty()) {
+                matches.add(node);
+            }
+            return false;
+        }
+        Node literal = node.literals.get(segments.get(index));
+        if (literal != null && match(literal, segments, index + 1, matches)) {
+            return true;
+        }
+        return node.parameter != null && match(node.parameter, segments, index + 1, matches);
+    }
+
+    private static Node load() {
+        // the table lists the nodes in pre-order as `parent kind segment open [method template resource]...`,
+        // separated by tabs; without a table every request is passed on to Jersey
+        try (InputStream in = RouteDispatchFilter.class.getResourceAsStream(TABLE_RESOURCE)) {
+            if (in == null) {
+                return null;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            List<Node> nodes = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                Node node = new Node();
+                int parent = Integer.parseInt(fields[0]);
+                if (parent >= 0) {
+                    Node parentNode = nodes.get(parent);
+                    if (fields[1].equals(LITERAL)) {
+                        parentNode.literals.put(fields[2], node);
+                    } else if (fields[1].equals(PARAMETER)) {
+                        parentNode.parameter = node;
+                    }
+                }
+                node.open = fields[3].equals(OPEN);
+                for (int i = 4; i + 2 < fields.length; i += 3) {
+                    node.targets.put(fields[i], new String[]{fields[i + 1], fields[i + 2]});
+                }
+                nodes.add(node);
+            }
+            return nodes.isEmpty() ? null : nodes.get(0);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.kumuluz.ee.serverless.azf;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AzfDeployMojoTest {
+
+    private static final String MANIFEST = ".azf-deploy.manifest";
+
+    @TempDir
+    Path baseFolder;
+
+    private Path configFolder;
+    private KuduStandIn kudu;
+
+    @BeforeEach
+    void createConfigFolder() throws IOException {
+        kudu = new KuduStandIn();
+        configFolder = baseFolder.resolve("target").resolve("azf-config");
+        write("host.json", "{\"version\": \"2.0\"}");
+        write("local.settings.json", "{}");
+        write("Users/function.json", "{\"bindings\": []}");
+        write("classes/com/example/App.class", "app");
+        write("classes/com/example/Users.class", "users");
+        Files.createDirectories(configFolder.resolve("dependency"));
+        writeJar("dependency/api.jar", "api");
+        writeJar("dependency/impl.jar", "impl");
+    }
+
+    @AfterEach
+    void stop() {
+        kudu.close();
+    }
+
+    @Test
+    void deltaDeploymentSendsOnlyTheChangedFiles() throws Exception {
+        writeSettings("DELTA_DEPLOY", "true");
+
+        // without a manifest on the function app, the whole package is deployed
+        deploy();
+        assertEquals(1, kudu.getRequests("POST", KuduStandIn.ZIP_DEPLOY_PATH).size());
+        assertTrue(kudu.getRequests("PUT", KuduStandIn.ZIP_PATH).isEmpty());
+        assertEquals(getLocalFiles(), kudu.getFiles().keySet().stream().collect(Collectors.toList()));
+
+        write("classes/com/example/App.class", "app, changed");
+        write("classes/com/example/Orders.class", "orders");
+        Files.delete(configFolder.resolve("dependency/impl.jar"));
+        deploy();
+
+        assertEquals(1, kudu.getRequests("POST", KuduStandIn.ZIP_DEPLOY_PATH).size());
+        List<KuduStandIn.Request> uploads = kudu.getRequests("PUT", KuduStandIn.ZIP_PATH);
+        assertEquals(1, uploads.size());
+        // host.json and the manifest are always sent, so that the host restarts and the next delta is known
+        assertEquals(List.of(MANIFEST, "classes/com/example/App.class", "classes/com/example/Orders.class", "host.json"),
+                KuduStandIn.getEntryNames(uploads.get(0).body));
+        assertEquals(List.of(KuduStandIn.WWWROOT_PATH + "dependency/impl.jar"),
+                kudu.getRequests("DELETE", KuduStandIn.WWWROOT_PATH).stream()
+                        .map(request -> request.path).collect(Collectors.toList()));
+        assertEquals(getLocalFiles(), kudu.getFiles().keySet().stream().collect(Collectors.toList()));
+        assertEquals("app, changed", new String(kudu.getFiles().get("classes/com/example/App.class"),
+                StandardCharsets.UTF_8));
+
+        // an unchanged package sends nothing
+        deploy();
+        assertEquals(1, kudu.getRequests("PUT", KuduStandIn.ZIP_PATH).size());
+        assertEquals(1, kudu.getRequests("DELETE", KuduStandIn.WWWROOT_PATH).size());
+    }
+
+    @Test
+    void runFromPackageZipIsReproducible() throws Exception {
+        writeSettings("RUN_FROM_PACKAGE", "true");
+        kudu.putSetting("WEBSITE_RUN_FROM_PACKAGE", "1");
+
+        deploy();
+        // the files are written again, with the same content
+        for (String file : getLocalFiles()) {
+            Files.setLastModifiedTime(configFolder.resolve(file), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        }
+        deploy();
+
+        List<KuduStandIn.Request> deployments = kudu.getRequests("POST", KuduStandIn.ZIP_DEPLOY_PATH);
+        assertEquals(2, deployments.size());
+        assertArrayEquals(deployments.get(0).body, deployments.get(1).body);
+
+        Path zip = Files.write(baseFolder.resolve("deployed.zip"), deployments.get(0).body);
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            int jars = 0;
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".jar")) {
+                    assertEquals(ZipEntry.STORED, entry.getMethod(), entry.getName());
+                    jars++;
+                }
+                assertFalse(entry.getName().equals("local.settings.json"));
+            }
+            assertEquals(2, jars);
+        }
+    }
+
+    private void deploy() throws MojoExecutionException {
+        MavenProject project = new MavenProject();
+        project.setFile(baseFolder.resolve("pom.xml").toFile());
+        Build build = new Build();
+        build.setDirectory(baseFolder.resolve("target").toString());
+        project.getModel().setBuild(build);
+
+        AzfDeployMojo mojo = new AzfDeployMojo();
+        mojo.project = project;
+        mojo.execute();
+    }
+
+    private void writeSettings(String... settings) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("FUNCTION_APP", "kumuluzee-sample");
+        properties.setProperty("AZF_USER", "user");
+        properties.setProperty("AZF_USER_PSW", "password");
+        properties.setProperty("SCM_URL", kudu.getUrl());
+        properties.setProperty("INITIAL_INVOKE", "false");
+        properties.setProperty("WRITE_METRICS", "false");
+        properties.setProperty("STREAM_DEPLOY", "false");
+        properties.setProperty("DELTA_DEPLOY", "false");
+        properties.setProperty("RUN_FROM_PACKAGE", "false");
+        properties.setProperty("HTTP_RETRIES", "1");
+        properties.setProperty("DEPLOY_STATUS_TIMEOUT", "30");
+        for (int i = 0; i < settings.length; i += 2) {
+            properties.setProperty(settings[i], settings[i + 1]);
+        }
+        try (var out = Files.newOutputStream(baseFolder.resolve(".azf"))) {
+            properties.store(out, null);
+        }
+    }
+
+    private List<String> getLocalFiles() throws IOException {
+        // the deployed files: everything in the configuration folder except the excluded ones and the zip
+        try (Stream<Path> files = Files.walk(configFolder)) {
+            return files.filter(Files::isRegularFile)
+                    .map(file -> configFolder.relativize(file).toString().replace('\\', '/'))
+                    .filter(name -> !name.equals("local.settings.json") && !name.endsWith(".zip"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path path = configFolder.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeJar(String file, String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream jar = new ZipOutputStream(bytes)) {
+            jar.putNextEntry(new ZipEntry("com/example/" + content + ".txt"));
+            jar.write(Collections.nCopies(100, content).toString().getBytes(StandardCharsets.UTF_8));
+            jar.closeEntry();
+        }
+        Files.write(configFolder.resolve(file), bytes.toByteArray());
+    }
+
+}
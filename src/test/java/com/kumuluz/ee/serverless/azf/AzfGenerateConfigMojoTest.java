@@ -0,0 +1,92 @@
+package com.kumuluz.ee.serverless.azf;
+
+import com.kumuluz.ee.serverless.common.TemplateRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AzfGenerateConfigMojoTest {
+
+    private static final Pattern COPY = Pattern.compile("^COPY (?:--from=(\\S+) )?\\[\"([^\"]+)\"", Pattern.MULTILINE);
+
+    @Test
+    void copiesTheExplodedLayoutFromTheLeastToTheMostFrequentlyChangingLayer() throws IOException {
+        String dockerfile = AzfGenerateConfigMojo.renderDockerfile("17", true, false, true, true);
+
+        assertEquals(List.of("runtime/", "dependency/", "functions:/layers/functions/", "classes/", "classes.jar",
+                "app.jsa"), getImageCopies(dockerfile));
+        assertTrue(dockerfile.contains("FROM mcr.microsoft.com/azure-functions/base:4\n"));
+        assertFalse(dockerfile.contains("azure-functions/java:4"));
+        assertFalse(dockerfile.contains("tmp/EeClassLoader"));
+    }
+
+    @Test
+    void copiesTheJarLayoutFromTheLeastToTheMostFrequentlyChangingLayer() throws IOException {
+        String dockerfile = AzfGenerateConfigMojo.renderDockerfile("11", false, true, true, false);
+
+        assertEquals(List.of("functions:/layers/functions/", "handler.jar", "app.jsa"), getImageCopies(dockerfile));
+        assertTrue(dockerfile.contains("ARG JAVA_VERSION=11\n"));
+        assertTrue(dockerfile.contains("FROM mcr.microsoft.com/azure-functions/java:4-java${JAVA_VERSION}-slim\n"));
+        assertTrue(dockerfile.contains("RUN mkdir -p tmp/EeClassLoader"));
+        // the image has a Java of its own, which the host finds through JAVA_HOME
+        assertTrue(dockerfile.contains("\"defaultExecutablePath\": \"%JAVA_HOME%\\/bin\\/java\""));
+    }
+
+    @Test
+    void copiesNoArchiveUntilItIsGenerated() throws IOException {
+        String dockerfile = AzfGenerateConfigMojo.renderDockerfile("17", false, false, false, false);
+
+        assertEquals(List.of("dependency/", "functions:/layers/functions/", "classes/"), getImageCopies(dockerfile));
+    }
+
+    @Test
+    void collectsTheFunctionConfigurationsAndHostJsonInTheirOwnLayer() throws IOException {
+        String dockerfile = AzfGenerateConfigMojo.renderDockerfile("17", false, false, false, false);
+        String stage = dockerfile.substring(dockerfile.indexOf("AS functions"), dockerfile.lastIndexOf("FROM "));
+
+        assertTrue(stage.contains("for config in */function.json"));
+        assertTrue(stage.contains("cp host.json /layers/functions/"));
+    }
+
+    @Test
+    void dockerignoreKeepsOnlyTheCopiedPartsInTheBuildContext() throws IOException {
+        List<String> patterns = TemplateRegistry.read(Paths.get(AzfGenerateConfigMojo.TEMPLATES_FOLDER,
+                AzfGenerateConfigMojo.DOCKERIGNORE_TEMPLATE).toString()).lines()
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .collect(Collectors.toList());
+
+        assertEquals(List.of("*.zip", "local.settings.json", "tmp/", "Dockerfile", ".dockerignore"), patterns);
+        List<String> copied = new ArrayList<>(getImageCopies(
+                AzfGenerateConfigMojo.renderDockerfile("17", true, false, true, true)));
+        copied.addAll(getImageCopies(AzfGenerateConfigMojo.renderDockerfile("17", false, true, true, false)));
+        // the files copied from the build context must not be ignored
+        for (String file : copied.stream().filter(file -> !file.contains(":")).collect(Collectors.toList())) {
+            for (String pattern : patterns) {
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern.replaceAll("/$", ""));
+                assertFalse(matcher.matches(Paths.get(file.replaceAll("/$", ""))), file + " is ignored by " + pattern);
+            }
+        }
+    }
+
+    private static List<String> getImageCopies(String dockerfile) {
+        // the sources of the COPY instructions of the final image, the ones from an earlier stage prefixed with its name
+        String image = dockerfile.substring(dockerfile.lastIndexOf("\nFROM "));
+        Matcher matcher = COPY.matcher(image);
+        List<String> copies = new ArrayList<>();
+        while (matcher.find()) {
+            copies.add(matcher.group(1) != null ? matcher.group(1) + ":" + matcher.group(2) : matcher.group(2));
+        }
+        return copies;
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.kumuluz.ee.serverless.azf;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KuduClientTest {
+
+    @TempDir
+    Path folder;
+
+    private KuduStandIn kudu;
+    private KuduClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        kudu = new KuduStandIn();
+        client = new KuduClient(kudu.getUrl(), "user", "password", Duration.ofSeconds(5), Duration.ofSeconds(30), 2,
+                new SystemStreamLog());
+    }
+
+    @AfterEach
+    void stop() {
+        client.close();
+        kudu.close();
+    }
+
+    @Test
+    void pollsTheLocationOfAnAsyncDeploymentUntilItCompletes() throws IOException {
+        kudu.setPendingPolls(2);
+        HttpResponse<String> response = client.upload("POST", "/api/zipdeploy?isAsync=true", writeZip("host.json"));
+
+        assertEquals(202, response.statusCode());
+        String location = response.headers().firstValue("Location").orElseThrow();
+        client.awaitDeployment(location, 30);
+        assertEquals(3, kudu.getRequests("GET", KuduStandIn.DEPLOYMENT_PATH).size());
+        assertTrue(kudu.getFiles().containsKey("host.json"));
+    }
+
+    @Test
+    void failsWhenTheDeploymentFails() throws IOException {
+        kudu.setDeploymentStatus(3);
+        HttpResponse<String> response = client.upload("POST", "/api/zipdeploy?isAsync=true", writeZip("host.json"));
+
+        String location = response.headers().firstValue("Location").orElseThrow();
+        IOException failure = assertThrows(IOException.class, () -> client.awaitDeployment(location, 30));
+        assertTrue(failure.getMessage().contains("failed with status 3"), failure.getMessage());
+    }
+
+    @Test
+    void retriesAfter503() throws IOException {
+        kudu.putSetting("WEBSITE_RUN_FROM_PACKAGE", "1");
+        kudu.failNext("GET", KuduStandIn.SETTINGS_PATH, 503);
+        kudu.failNext("POST", KuduStandIn.ZIP_DEPLOY_PATH, 503, 503);
+
+        Map<String, String> settings = client.getSettings();
+        HttpResponse<String> response = client.upload("POST", "/api/zipdeploy", writeZip("host.json"));
+
+        assertEquals("1", settings.get("WEBSITE_RUN_FROM_PACKAGE"));
+        assertEquals(2, kudu.getRequests("GET", KuduStandIn.SETTINGS_PATH).size());
+        assertEquals(200, response.statusCode());
+        assertEquals(3, kudu.getRequests("POST", KuduStandIn.ZIP_DEPLOY_PATH).size());
+    }
+
+    @Test
+    void doesNotRetryAPostAfter500() throws IOException {
+        kudu.failNext("POST", KuduStandIn.ZIP_DEPLOY_PATH, 500);
+
+        HttpResponse<String> response = client.upload("POST", "/api/zipdeploy", writeZip("host.json"));
+
+        assertEquals(500, response.statusCode());
+        assertEquals(1, kudu.getRequests("POST", KuduStandIn.ZIP_DEPLOY_PATH).size());
+        assertTrue(kudu.getFiles().isEmpty());
+    }
+
+    @Test
+    void retriesAPutAfter500() throws IOException {
+        kudu.failNext("PUT", KuduStandIn.ZIP_PATH, 500);
+
+        HttpResponse<String> response = client.send("PUT", "/api/zip/site/wwwroot/",
+                output -> Files.copy(writeZip("host.json"), output));
+
+        assertEquals(200, response.statusCode());
+        assertEquals(2, kudu.getRequests("PUT", KuduStandIn.ZIP_PATH).size());
+        assertTrue(kudu.getFiles().containsKey("host.json"));
+    }
+
+    @Test
+    void failingStreamedBodyAbortsTheUpload() {
+        IOException failure = assertThrows(IOException.class, () -> client.send("PUT", "/api/zip/site/wwwroot/",
+                output -> {
+                    output.write(new byte[256 * 1_024]);
+                    throw new IOException("disk failure");
+                }));
+
+        assertTrue(hasMessage(failure, "disk failure"), failure.toString());
+        // the truncated body is neither received as a complete one nor sent again
+        assertTrue(kudu.getRequests("PUT", KuduStandIn.ZIP_PATH).isEmpty());
+        assertEquals(0, client.getUploadedBytes());
+    }
+
+    @Test
+    void downloadsAndDeletesFiles() throws IOException {
+        kudu.putFile("classes/App.class", new byte[]{1, 2, 3});
+
+        assertArrayEquals(new byte[]{1, 2, 3}, client.downloadFile(KuduClient.WWWROOT + "classes/App.class"));
+        assertNull(client.downloadFile(KuduClient.WWWROOT + "classes/Missing.class"));
+        client.deleteFile(KuduClient.WWWROOT + "classes/App.class");
+        client.deleteFile(KuduClient.WWWROOT + "classes/Missing.class");
+        assertTrue(kudu.getFiles().isEmpty());
+    }
+
+    private Path writeZip(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String name : names) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(name.getBytes());
+                zip.closeEntry();
+            }
+        }
+        return Files.write(folder.resolve("package.zip"), bytes.toByteArray());
+    }
+
+    private static boolean hasMessage(Throwable e, String message) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (message.equals(cause.getMessage())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.kumuluz.ee.serverless.azf;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Stand-in for the Kudu site of a function app, with the endpoints the plugin uses: `/api/zipdeploy`, `/api/zip`,
+ * `/api/vfs`, `/api/settings` and the status of the latest deployment. The content of wwwroot is kept in memory.
+ * Requests are only recorded once their whole body was received.
+ *
+ * @author Boris Radovic
+ * @since 1.0.0
+ */
+
+class KuduStandIn implements AutoCloseable {
+
+    static final String WWWROOT_PATH = "/api/vfs/site/wwwroot/";
+    static final String ZIP_PATH = "/api/zip/site/wwwroot/";
+    static final String ZIP_DEPLOY_PATH = "/api/zipdeploy";
+    static final String SETTINGS_PATH = "/api/settings";
+    static final String DEPLOYMENT_PATH = "/api/deployments/latest";
+
+    static class Request {
+
+        final String method;
+        final String path;
+        final byte[] body;
+        final int status;
+
+        Request(String method, String path, byte[] body, int status) {
+            this.method = method;
+            this.path = path;
+            this.body = body;
+            this.status = status;
+        }
+
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, byte[]> files = new TreeMap<>(); // wwwroot -> content
+    private final List<Request> requests = new ArrayList<>();
+    private final Map<String, Deque<Integer>> failures = new HashMap<>(); // `METHOD path` -> statuses to answer first
+    private final Map<String, String> settings = new TreeMap<>();
+    private int pendingPolls; // polls of the deployment status answered before it completes
+    private int deploymentStatus = 4;
+
+    KuduStandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    synchronized void failNext(String method, String path, Integer... statuses) {
+        failures.computeIfAbsent(method + " " + path, key -> new ArrayDeque<>()).addAll(List.of(statuses));
+    }
+
+    synchronized void setPendingPolls(int pendingPolls) {
+        this.pendingPolls = pendingPolls;
+    }
+
+    synchronized void setDeploymentStatus(int deploymentStatus) {
+        this.deploymentStatus = deploymentStatus;
+    }
+
+    synchronized void putSetting(String key, String value) {
+        settings.put(key, value);
+    }
+
+    synchronized void putFile(String file, byte[] content) {
+        files.put(file, content);
+    }
+
+    synchronized Map<String, byte[]> getFiles() {
+        return new TreeMap<>(files);
+    }
+
+    synchronized List<Request> getRequests(String method, String path) {
+        return requests.stream()
+                .filter(request -> request.method.equals(method) && request.path.startsWith(path))
+                .collect(Collectors.toList());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            } catch (IOException e) {
+                // the client aborted the request, nothing was received
+                return;
+            }
+            synchronized (this) {
+                Deque<Integer> statuses = failures.get(method + " " + path);
+                if (statuses != null && !statuses.isEmpty()) {
+                    int status = statuses.poll();
+                    requests.add(new Request(method, path, body, status));
+                    respond(exchange, status, "");
+                    return;
+                }
+                int status = answer(exchange, method, path, body);
+                requests.add(new Request(method, path, body, status));
+            }
+        }
+    }
+
+    private int answer(HttpExchange exchange, String method, String path, byte[] body) throws IOException {
+        if (method.equals("POST") && path.equals(ZIP_DEPLOY_PATH)) {
+            // like a deployment to wwwroot, the files of the previous one are replaced
+            files.clear();
+            extract(body);
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null && query.contains("isAsync=true")) {
+                exchange.getResponseHeaders().add("Location", DEPLOYMENT_PATH);
+                return respond(exchange, 202, "");
+            }
+            return respond(exchange, 200, "");
+        } else if (method.equals("GET") && path.equals(DEPLOYMENT_PATH)) {
+            if (pendingPolls > 0) {
+                pendingPolls--;
+                return respond(exchange, 200, "{\"id\":\"latest\",\"status\":1,\"status_text\":\"Building\",\"complete\":false}");
+            }
+            return respond(exchange, 200, String.format("{\"id\":\"latest\",\"status\":%d,\"status_text\":\"\",\"complete\":true}",
+                    deploymentStatus));
+        } else if (method.equals("PUT") && path.equals(ZIP_PATH)) {
+            extract(body);
+            return respond(exchange, 200, "");
+        } else if (path.startsWith(WWWROOT_PATH)) {
+            String file = path.substring(WWWROOT_PATH.length());
+            if (method.equals("GET")) {
+                byte[] content = files.get(file);
+                if (content == null) {
+                    return respond(exchange, 404, "");
+                }
+                exchange.sendResponseHeaders(200, content.length);
+                exchange.getResponseBody().write(content);
+                return 200;
+            } else if (method.equals("DELETE")) {
+                return respond(exchange, files.remove(file) != null ? 200 : 404, "");
+            }
+        } else if (method.equals("GET") && path.equals(SETTINGS_PATH)) {
+            return respond(exchange, 200, settings.entrySet().stream()
+                    .map(setting -> String.format("\"%s\":\"%s\"", setting.getKey(), setting.getValue()))
+                    .collect(Collectors.joining(",", "{", "}")));
+        }
+        return respond(exchange, 404, "");
+    }
+
+    private void extract(byte[] zip) throws IOException {
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    files.put(entry.getName(), in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    private static int respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        return status;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    static List<String> getEntryNames(byte[] zip) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+}
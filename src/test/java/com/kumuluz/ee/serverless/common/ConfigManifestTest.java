@@ -0,0 +1,79 @@
+package com.kumuluz.ee.serverless.common;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigManifestTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void removesTheFilesTheCurrentBuildNoLongerProduces() throws IOException {
+        Path configFolder = folder.resolve("azf-config");
+        Path manifestFile = folder.resolve("azf-config.manifest");
+        ConfigManifest previous = ConfigManifest.load(manifestFile, configFolder, true);
+        write(configFolder, previous, "host.json", "1");
+        write(configFolder, previous, "Users_GET_list/function.json", "1");
+        write(configFolder, previous, "Orders_GET_list/function.json", "1");
+        write(configFolder, previous, "classes/com/example/old/Removed.class", "1");
+        write(configFolder, previous, "classes/com/example/App.class", "1");
+        previous.save();
+        Files.writeString(configFolder.resolve("classes/com/example/Unknown.class"), "not produced by the plugin");
+
+        ConfigManifest current = ConfigManifest.load(manifestFile, configFolder, true);
+        assertFalse(current.record("host.json", "1"));
+        assertTrue(current.record("Users_GET_list/function.json", "2"));
+        current.track("classes\\com\\example\\App.class", "1");
+
+        assertEquals(2, current.removeStaleFiles());
+        assertTrue(Files.exists(configFolder.resolve("host.json")));
+        assertTrue(Files.exists(configFolder.resolve("Users_GET_list/function.json")));
+        assertTrue(Files.exists(configFolder.resolve("classes/com/example/App.class")));
+        assertTrue(Files.exists(configFolder.resolve("classes/com/example/Unknown.class")));
+        // the folders that became empty are removed with the files, the configuration folder itself is kept
+        assertFalse(Files.exists(configFolder.resolve("Orders_GET_list")));
+        assertFalse(Files.exists(configFolder.resolve("classes/com/example/old")));
+        assertTrue(Files.isDirectory(configFolder));
+    }
+
+    @Test
+    void removesNothingWithoutAPreviousManifest() throws IOException {
+        Path configFolder = folder.resolve("azf-config");
+        Path manifestFile = folder.resolve("azf-config.manifest");
+        ConfigManifest previous = ConfigManifest.load(manifestFile, configFolder, true);
+        write(configFolder, previous, "Orders_GET_list/function.json", "1");
+        previous.save();
+
+        // a build that is not incremental does not know what the previous one produced
+        ConfigManifest current = ConfigManifest.load(manifestFile, configFolder, false);
+        assertEquals(0, current.removeStaleFiles());
+        assertTrue(Files.exists(configFolder.resolve("Orders_GET_list/function.json")));
+    }
+
+    @Test
+    void rewritesAFileThatWasDeleted() throws IOException {
+        Path configFolder = folder.resolve("azf-config");
+        Path manifestFile = folder.resolve("azf-config.manifest");
+        ConfigManifest previous = ConfigManifest.load(manifestFile, configFolder, true);
+        write(configFolder, previous, "host.json", "1");
+        previous.save();
+        Files.delete(configFolder.resolve("host.json"));
+
+        assertTrue(ConfigManifest.load(manifestFile, configFolder, true).record("host.json", "1"));
+    }
+
+    private static void write(Path configFolder, ConfigManifest manifest, String file, String hash) throws IOException {
+        assertTrue(manifest.record(file, hash));
+        Path path = configFolder.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, file);
+    }
+
+}
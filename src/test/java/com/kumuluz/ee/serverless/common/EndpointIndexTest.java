@@ -0,0 +1,117 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.kumuluz.ee.serverless.common.enums.RestMethodEnum;
+import com.kumuluz.ee.serverless.common.pojo.IndexedClass;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EndpointIndexTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void loadsWhatWasSaved() throws IOException {
+        Map<String, IndexedClass> index = new HashMap<>();
+        IndexedClass users = new IndexedClass();
+        users.setHash("a1");
+        users.setClassName("com.example.Users");
+        users.setSimpleClassName("Users");
+        users.setResource(true);
+        users.getEndpoints().add(endpoint(users, RestMethodEnum.GET, "list", ""));
+        users.getEndpoints().add(endpoint(users, RestMethodEnum.DELETE, "delete", "{id}"));
+        users.getLocatorUrls().add("users/{id}/orders");
+        index.put("com/example/Users.class", users);
+        IndexedClass application = new IndexedClass();
+        application.setHash("b2");
+        application.setClassName("com.example.App");
+        application.setSimpleClassName("App");
+        application.setApplicationPath("v1");
+        application.setProvider(true);
+        index.put("com/example/App.class", application);
+
+        Path indexFile = folder.resolve("index/endpoints.idx");
+        EndpointIndex.save(indexFile, index);
+        Map<String, IndexedClass> loaded = EndpointIndex.load(indexFile);
+
+        assertEquals(index.keySet(), loaded.keySet());
+        IndexedClass loadedUsers = loaded.get("com/example/Users.class");
+        assertEquals("a1", loadedUsers.getHash());
+        assertEquals("com.example.Users", loadedUsers.getClassName());
+        assertNull(loadedUsers.getApplicationPath());
+        assertTrue(loadedUsers.isResource());
+        assertFalse(loadedUsers.isProvider());
+        assertEquals(List.of("users/{id}/orders"), loadedUsers.getLocatorUrls());
+        assertEquals(2, loadedUsers.getEndpoints().size());
+        RestEndpoint delete = loadedUsers.getEndpoints().get(1);
+        assertEquals(RestMethodEnum.DELETE, delete.getRestMethodEnum());
+        assertEquals("delete", delete.getMethodName());
+        assertEquals("users", delete.getClassUrl());
+        assertEquals("{id}", delete.getMethodUrl());
+        assertEquals("Users", delete.getSimpleClassName());
+        IndexedClass loadedApplication = loaded.get("com/example/App.class");
+        assertEquals("v1", loadedApplication.getApplicationPath());
+        assertTrue(loadedApplication.isProvider());
+        assertTrue(loadedApplication.getEndpoints().isEmpty());
+    }
+
+    @Test
+    void ignoresAnIndexOfAnotherVersion() throws IOException {
+        // an index written by an earlier version of the plugin lacks fields, the project is scanned again
+        Path indexFile = folder.resolve("endpoints.idx");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(indexFile))) {
+            out.writeInt(2);
+            out.writeInt(1);
+            out.writeUTF("com/example/Users.class");
+            out.writeUTF("a1");
+        }
+
+        assertTrue(EndpointIndex.load(indexFile).isEmpty());
+    }
+
+    @Test
+    void ignoresACorruptedIndex() throws IOException {
+        Path indexFile = folder.resolve("endpoints.idx");
+        EndpointIndex.save(indexFile, Map.of("com/example/Users.class", resource()));
+        byte[] content = Files.readAllBytes(indexFile);
+        Files.write(indexFile, Arrays.copyOf(content, content.length - 3));
+
+        assertTrue(EndpointIndex.load(indexFile).isEmpty());
+        assertTrue(EndpointIndex.load(folder.resolve("missing.idx")).isEmpty());
+    }
+
+    private static IndexedClass resource() {
+        IndexedClass indexedClass = new IndexedClass();
+        indexedClass.setHash("a1");
+        indexedClass.setClassName("com.example.Users");
+        indexedClass.setSimpleClassName("Users");
+        indexedClass.setResource(true);
+        indexedClass.getEndpoints().add(endpoint(indexedClass, RestMethodEnum.GET, "list", ""));
+        return indexedClass;
+    }
+
+    private static RestEndpoint endpoint(IndexedClass indexedClass, RestMethodEnum method, String methodName,
+                                         String methodUrl) {
+        RestEndpoint endpoint = new RestEndpoint();
+        endpoint.setClassName(indexedClass.getClassName());
+        endpoint.setSimpleClassName(indexedClass.getSimpleClassName());
+        endpoint.setRestMethodEnum(method);
+        endpoint.setMethodName(methodName);
+        endpoint.setClassUrl("users");
+        endpoint.setMethodUrl(methodUrl);
+        return endpoint;
+    }
+
+}
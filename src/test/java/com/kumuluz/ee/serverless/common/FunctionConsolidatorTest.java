@@ -0,0 +1,98 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.kumuluz.ee.serverless.common.enums.ConsolidationStrategyEnum;
+import com.kumuluz.ee.serverless.common.enums.RestMethodEnum;
+import com.kumuluz.ee.serverless.common.pojo.FunctionDefinition;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FunctionConsolidatorTest {
+
+    @Test
+    void routesEveryEndpointOfTheStrategiesToOneFunction() {
+        List<RestEndpoint> endpoints = List.of(
+                endpoint("Users", RestMethodEnum.GET, "list", "users", ""),
+                endpoint("Users", RestMethodEnum.GET, "get", "users", "{id: [0-9]+}"),
+                endpoint("Users", RestMethodEnum.GET, "me", "users", "me"),
+                endpoint("Orders", RestMethodEnum.POST, "create", "{tenant}/orders", ""),
+                endpoint("Orders", RestMethodEnum.GET, "get", "{tenant}/orders", "{id}"));
+
+        for (ConsolidationStrategyEnum strategy : ConsolidationStrategyEnum.values()) {
+            List<FunctionDefinition> functions = FunctionConsolidator.consolidate(endpoints, strategy);
+            assertEquals(List.of(), FunctionConsolidator.findRouteConflicts(endpoints, functions), strategy.name());
+        }
+    }
+
+    @Test
+    void prefersTheFunctionWithTheMostSpecificRoute() {
+        // `v1/users/...` is more specific than the catch-all of `v1`, which serves `v1/{tenant}/orders`
+        List<RestEndpoint> endpoints = List.of(
+                endpoint("Users", RestMethodEnum.GET, "list", "users", ""),
+                endpoint("Orders", RestMethodEnum.GET, "list", "{tenant}/orders", ""));
+        List<FunctionDefinition> functions = FunctionConsolidator.consolidate(endpoints, ConsolidationStrategyEnum.PREFIX);
+
+        assertEquals(List.of("v1/users/{*azfPath}", "v1/{*azfPath}"),
+                functions.stream().map(FunctionDefinition::getRoute).collect(Collectors.toList()));
+        assertEquals(List.of(), FunctionConsolidator.findRouteConflicts(endpoints, functions));
+    }
+
+    @Test
+    void reportsEndpointsMatchedByFunctionsOfEqualPrecedence() {
+        // JAX-RS tells the parameters apart by their regular expressions, the Functions host does not
+        List<RestEndpoint> endpoints = List.of(
+                endpoint("Users", RestMethodEnum.GET, "byId", "users", "{id}"),
+                endpoint("Users", RestMethodEnum.GET, "byName", "users", "{name}"));
+        List<FunctionDefinition> functions = FunctionConsolidator.consolidate(endpoints, ConsolidationStrategyEnum.NONE);
+
+        List<String> conflicts = FunctionConsolidator.findRouteConflicts(endpoints, functions);
+        assertEquals(2, conflicts.size());
+        assertTrue(conflicts.get(0).contains("is ambiguous, it matches the functions Users_GET_byId, Users_GET_byName"),
+                conflicts.get(0));
+    }
+
+    @Test
+    void reportsEndpointsNoFunctionAccepts() {
+        RestEndpoint create = endpoint("Users", RestMethodEnum.POST, "create", "users", "");
+        FunctionDefinition function = new FunctionDefinition();
+        function.setName("Users");
+        function.setRoute("v1/users");
+        function.getMethods().add(RestMethodEnum.GET);
+
+        List<String> conflicts = FunctionConsolidator.findRouteConflicts(List.of(create), List.of(function));
+        assertEquals(1, conflicts.size());
+        assertTrue(conflicts.get(0).contains("is not reachable, no function matches POST /v1/users"), conflicts.get(0));
+    }
+
+    @Test
+    void classesWithTheSameRouteShareAFunction() {
+        // the paths differ only in the names and constraints of their parameters, so they match the same requests
+        List<RestEndpoint> endpoints = List.of(
+                endpoint("Items", RestMethodEnum.GET, "get", "items/{id}", ""),
+                endpoint("ItemsAdmin", RestMethodEnum.DELETE, "delete", "items/{key: [0-9]+}", ""));
+        List<FunctionDefinition> functions = FunctionConsolidator.consolidate(endpoints, ConsolidationStrategyEnum.CLASS);
+
+        assertEquals(1, functions.size());
+        assertEquals("v1/items/{id}/{*azfPath}", functions.get(0).getRoute());
+        assertEquals(List.of(RestMethodEnum.GET, RestMethodEnum.DELETE), functions.get(0).getMethods());
+        assertEquals(List.of(), FunctionConsolidator.findRouteConflicts(endpoints, functions));
+    }
+
+    private static RestEndpoint endpoint(String simpleClassName, RestMethodEnum method, String methodName,
+                                         String classUrl, String methodUrl) {
+        RestEndpoint endpoint = new RestEndpoint();
+        endpoint.setClassName("com.example." + simpleClassName);
+        endpoint.setSimpleClassName(simpleClassName);
+        endpoint.setRestMethodEnum(method);
+        endpoint.setMethodName(methodName);
+        endpoint.setBaseAppUrl("v1");
+        endpoint.setClassUrl(classUrl);
+        endpoint.setMethodUrl(methodUrl);
+        return endpoint;
+    }
+
+}
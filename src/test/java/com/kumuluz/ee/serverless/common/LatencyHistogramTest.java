@@ -0,0 +1,74 @@
+package com.kumuluz.ee.serverless.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void reportsSmallValuesExactly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        IntStream.rangeClosed(1, 100).forEach(histogram::record);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(50, histogram.getPercentile(50));
+        assertEquals(90, histogram.getPercentile(90));
+        assertEquals(99, histogram.getPercentile(99));
+        assertEquals(100, histogram.getPercentile(100));
+    }
+
+    @Test
+    void reportsLargeValuesWithinOnePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 ms to 10 s in steps of 1 ms
+        for (long micros = 1_000; micros <= 10_000_000; micros += 1_000) {
+            histogram.record(micros);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertWithinOnePercent(5_000_000, histogram.getPercentile(50));
+        assertWithinOnePercent(9_000_000, histogram.getPercentile(90));
+        assertWithinOnePercent(9_900_000, histogram.getPercentile(99));
+        assertWithinOnePercent(9_990_000, histogram.getPercentile(99.9));
+        // the highest value of a bucket is capped at the maximum
+        assertEquals(10_000_000, histogram.getPercentile(100));
+        assertEquals(10_000_000, histogram.getMax());
+    }
+
+    @Test
+    void reportsTheTailOfASkewedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 990; i++) {
+            histogram.record(2_000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(800_000);
+        }
+
+        assertWithinOnePercent(2_000, histogram.getPercentile(50));
+        assertWithinOnePercent(2_000, histogram.getPercentile(99));
+        assertWithinOnePercent(800_000, histogram.getPercentile(99.9));
+        assertTrue(histogram.getPercentile(99) >= 2_000);
+    }
+
+    @Test
+    void reportsZeroWithoutValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5); // counted as 0
+
+        assertEquals(0, new LatencyHistogram().getPercentile(99));
+        assertEquals(0, new LatencyHistogram().getMean());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(1, histogram.getCount());
+    }
+
+    private static void assertWithinOnePercent(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 100, actual + " is not within 1% of " + expected);
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.kumuluz.ee.serverless.common;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadShrinkerTest {
+
+    @TempDir
+    Path folder;
+
+    private Path configFolder;
+
+    @BeforeEach
+    void createConfigFolder() throws IOException {
+        configFolder = folder.resolve("azf-config");
+        write("host.json", "{}");
+        write("local.settings.json", "{}");
+        write("Users/function.json", "{}");
+        write("tmp/EeClassLoader/cache.bin", "cache");
+        write("classes/com/example/App.class", "app");
+        write("classes/com/example/App.java", "source");
+        write("classes/META-INF/azf/routes.idx", "routes");
+        writeJar("dependency/api.jar", "api");
+        Files.copy(configFolder.resolve("dependency/api.jar"), configFolder.resolve("dependency/api-copy.jar"));
+        writeJar("dependency/impl.jar", "impl");
+    }
+
+    @Test
+    void excludesTheFilesMatchingAPattern() throws IOException {
+        PayloadShrinker shrinker = new PayloadShrinker(List.of(), List.of("local.settings.json", "tmp/EeClassLoader/**",
+                "**/*.java", " "), false, null);
+        SortedMap<String, Path> entries = shrinker.shrink(configFolder, file -> true);
+
+        assertEquals(List.of("Users", "Users/function.json", "classes", "classes/META-INF", "classes/META-INF/azf",
+                "classes/META-INF/azf/routes.idx", "classes/com", "classes/com/example",
+                "classes/com/example/App.class", "dependency", "dependency/api-copy.jar", "dependency/api.jar",
+                "dependency/impl.jar", "host.json", "tmp", "tmp/EeClassLoader"), new ArrayList<>(entries.keySet()));
+        assertEquals(configFolder.resolve("host.json"), entries.get("host.json"));
+        Map<String, long[]> savings = shrinker.getSavings();
+        assertEquals(1, savings.get("exclude local.settings.json")[0]);
+        assertEquals(1, savings.get("exclude tmp/EeClassLoader/**")[0]);
+        assertEquals(1, savings.get("exclude **/*.java")[0]);
+        assertEquals("source".length(), savings.get("exclude **/*.java")[1]);
+    }
+
+    @Test
+    void matchesGlobsLikeThePayloadPatterns() throws IOException {
+        // `*` stays within a folder, `**` crosses folders, `?` is one character, a folder includes its content
+        assertEquals(List.of("Users", "Users/function.json", "host.json"),
+                select("classes", "dependency", "tmp", "local.*"));
+        assertEquals(List.of("Users", "Users/function.json", "classes", "classes/META-INF", "classes/META-INF/azf",
+                        "classes/com", "classes/com/example", "dependency", "tmp", "tmp/EeClassLoader"),
+                select("*.json", "**/*.class", "**/*.java", "**/*.bin", "**/*.idx", "dependency/*.jar"));
+        assertEquals(List.of("Users", "Users/function.json", "classes", "classes/com", "classes/com/example",
+                        "classes/com/example/App.class", "host.json", "local.settings.json"),
+                select("dependency", "tmp", "classes/META-INF", "**/App.jav?"));
+    }
+
+    @Test
+    void keepsTheFilesMatchingAnIncludePattern() throws IOException {
+        PayloadShrinker shrinker = new PayloadShrinker(List.of("classes/META-INF/**"), List.of("classes/**"), false,
+                null);
+        SortedMap<String, Path> entries = shrinker.shrink(configFolder, file -> true);
+
+        assertTrue(entries.containsKey("classes/META-INF/azf/routes.idx"));
+        assertFalse(entries.containsKey("classes/com/example/App.class"));
+        assertTrue(entries.containsKey("classes")); // the folder itself does not match `classes/**`
+    }
+
+    @Test
+    void packagesJarsWithTheSameContentOnce() throws IOException {
+        PayloadShrinker shrinker = new PayloadShrinker(List.of(), List.of(), true, null);
+        SortedMap<String, Path> entries = shrinker.shrink(configFolder, file -> true);
+
+        // the first one in name order is kept
+        assertTrue(entries.containsKey("dependency/api-copy.jar"));
+        assertFalse(entries.containsKey("dependency/api.jar"));
+        assertTrue(entries.containsKey("dependency/impl.jar"));
+        long[] saving = shrinker.getSavings().get(PayloadShrinker.DUPLICATE_JARS_RULE);
+        assertEquals(1, saving[0]);
+        assertEquals(Files.size(configFolder.resolve("dependency/api.jar")), saving[1]);
+        // the hashes of the compared jars are kept for the deployment manifest
+        assertEquals(Commons.hash(configFolder.resolve("dependency/impl.jar")),
+                shrinker.getHashes().get(configFolder.resolve("dependency/impl.jar")));
+        assertEquals(3, shrinker.getHashes().size());
+    }
+
+    @Test
+    void stripsSourcesAndMavenMetadataFromCopiesOfTheJars() throws IOException {
+        Path strippedJarsFolder = folder.resolve("azf-payload");
+        PayloadShrinker shrinker = new PayloadShrinker(List.of(), List.of(), true, strippedJarsFolder);
+        SortedMap<String, Path> entries = shrinker.shrink(configFolder, file -> true);
+
+        Path stripped = entries.get("dependency/impl.jar");
+        assertTrue(stripped.startsWith(strippedJarsFolder));
+        try (ZipFile jar = new ZipFile(stripped.toFile())) {
+            assertNotNull(jar.getEntry("com/example/impl.class"));
+            assertNull(jar.getEntry("com/example/impl.java"));
+            assertNull(jar.getEntry("META-INF/maven/com.example/impl/pom.xml"));
+        }
+        // the configuration folder is left as it is
+        try (ZipFile jar = new ZipFile(configFolder.resolve("dependency/impl.jar").toFile())) {
+            assertNotNull(jar.getEntry("com/example/impl.java"));
+        }
+        assertEquals(2, shrinker.getSavings().get(PayloadShrinker.STRIP_JARS_RULE)[0]);
+    }
+
+    private List<String> select(String... excludes) throws IOException {
+        return new ArrayList<>(new PayloadShrinker(List.of(), List.of(excludes), false, null)
+                .shrink(configFolder, file -> true).keySet());
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path path = configFolder.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeJar(String file, String name) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream jar = new ZipOutputStream(bytes)) {
+            for (String entry : List.of("com/example/" + name + ".class", "com/example/" + name + ".java",
+                    "META-INF/maven/com.example/" + name + "/pom.xml")) {
+                jar.putNextEntry(new ZipEntry(entry));
+                jar.write(entry.repeat(50).getBytes(StandardCharsets.UTF_8));
+                jar.closeEntry();
+            }
+        }
+        Path path = configFolder.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, bytes.toByteArray());
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.kumuluz.ee.serverless.common;
+
+import com.kumuluz.ee.serverless.common.enums.RestMethodEnum;
+import com.kumuluz.ee.serverless.common.pojo.IndexedClass;
+import com.kumuluz.ee.serverless.common.pojo.RestEndpoint;
+import com.kumuluz.ee.serverless.runtime.RouteDispatchFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.PathSegment;
+import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteTableTest {
+
+    @TempDir
+    Path classesFolder;
+
+    private ContainerRequestFilter filter;
+
+    @BeforeEach
+    void writeRouteTable() throws Exception {
+        IndexedClass users = resource("com.example.Users");
+        users.getEndpoints().add(endpoint(users, RestMethodEnum.GET, "list", "users", ""));
+        users.getEndpoints().add(endpoint(users, RestMethodEnum.POST, "create", "users", "/"));
+        users.getEndpoints().add(endpoint(users, RestMethodEnum.GET, "get", "users", "{id}"));
+        users.getEndpoints().add(endpoint(users, RestMethodEnum.GET, "me", "users", "me"));
+        users.getLocatorUrls().add("users/{id}/orders");
+        IndexedClass files = resource("com.example.Files");
+        files.getEndpoints().add(endpoint(files, RestMethodEnum.GET, "download", "files", "{path: .+}"));
+        IndexedClass orders = resource("com.example.Orders");
+        orders.setResource(false); // only reached through the locator of Users
+        orders.getEndpoints().add(endpoint(orders, RestMethodEnum.GET, "list", "", ""));
+
+        assertTrue(RouteTable.write(classesFolder, List.of(users, files, orders)));
+        assertFalse(RouteTable.write(classesFolder, List.of(users, files, orders)));
+        assertTrue(Files.exists(classesFolder.resolve(RouteTable.TABLE_FILE)));
+        filter = loadFilter();
+    }
+
+    @Test
+    void labelsRequestsWithTheirEndpoint() throws IOException {
+        assertEquals(List.of("users", "com.example.Users#list"), dispatch("GET", "users"));
+        assertEquals(List.of("users", "com.example.Users#create"), dispatch("POST", "users/"));
+        assertEquals(List.of("users/{id}", "com.example.Users#get"), dispatch("GET", "users/42"));
+        // a literal segment is preferred over a parameter
+        assertEquals(List.of("users/me", "com.example.Users#me"), dispatch("GET", "users/me"));
+        // Jersey answers HEAD with the GET method
+        assertEquals(List.of("users/{id}", "com.example.Users#get"), dispatch("HEAD", "users/42"));
+    }
+
+    @Test
+    void passesTheRequestsNotInTheTableOnToJersey() throws IOException {
+        // the filter never answers a request itself, it may be served by a resource registered at runtime
+        assertEquals(List.of(), dispatch("DELETE", "users/42"));
+        assertEquals(List.of(), dispatch("GET", "health"));
+        assertEquals(List.of(), dispatch("GET", "users/42/unknown"));
+        // the endpoints of classes without @Path are not in the table
+        assertEquals(List.of(), dispatch("GET", ""));
+        // below a sub-resource locator or a parameter with a regular expression, Jersey decides
+        assertEquals(List.of(), dispatch("GET", "users/42/orders"));
+        assertEquals(List.of(), dispatch("GET", "files/a/b.txt"));
+    }
+
+    @Test
+    void removesTheTableAndTheFilter() throws IOException {
+        assertTrue(RouteTable.remove(classesFolder));
+        assertFalse(Files.exists(classesFolder.resolve(RouteTable.TABLE_FILE)));
+        assertFalse(RouteTable.remove(classesFolder));
+    }
+
+    private List<String> dispatch(String method, String path) throws IOException {
+        Map<String, Object> properties = new HashMap<>();
+        List<PathSegment> segments = Arrays.stream(path.split("/", -1)).map(RouteTableTest::segment)
+                .collect(Collectors.toList());
+        UriInfo uriInfo = proxy(UriInfo.class, (name, args) -> name.equals("getPathSegments") ? segments : null);
+        ContainerRequestContext request = proxy(ContainerRequestContext.class, (name, args) -> {
+            switch (name) {
+                case "getMethod":
+                    return method;
+                case "getUriInfo":
+                    return uriInfo;
+                case "setProperty":
+                    properties.put((String) args[0], args[1]);
+                    return null;
+                case "abortWith":
+                    fail("The request was aborted");
+                default:
+                    return null;
+            }
+        });
+        filter.filter(request);
+        if (properties.isEmpty()) {
+            return List.of();
+        }
+        return List.of((String) properties.get(RouteDispatchFilter.TEMPLATE_PROPERTY),
+                (String) properties.get(RouteDispatchFilter.RESOURCE_PROPERTY));
+    }
+
+    private ContainerRequestFilter loadFilter() throws Exception {
+        // the filter reads the table from the class path of its own class loader, so it is loaded from the classes
+        // folder the table was written to, like in the application
+        String runtimePackage = RouteDispatchFilter.class.getPackageName() + ".";
+        ClassLoader loader = new URLClassLoader(new URL[]{classesFolder.toUri().toURL()}, getClass().getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                synchronized (getClassLoadingLock(name)) {
+                    if (!name.startsWith(runtimePackage)) {
+                        return super.loadClass(name, resolve);
+                    }
+                    Class<?> loaded = findLoadedClass(name);
+                    return loaded != null ? loaded : findClass(name);
+                }
+            }
+        };
+        Class<?> filterClass = loader.loadClass(RouteTable.FILTER_CLASS);
+        assertSame(loader, filterClass.getClassLoader());
+        return (ContainerRequestFilter) filterClass.getConstructor().newInstance();
+    }
+
+    private static PathSegment segment(String path) {
+        return proxy(PathSegment.class, (name, args) -> name.equals("getPath") ? path : null);
+    }
+
+    private interface Answer {
+        Object answer(String name, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Answer answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> answer.answer(method.getName(), args)));
+    }
+
+    private static IndexedClass resource(String className) {
+        IndexedClass indexedClass = new IndexedClass();
+        indexedClass.setClassName(className);
+        indexedClass.setSimpleClassName(className.substring(className.lastIndexOf('.') + 1));
+        indexedClass.setResource(true);
+        return indexedClass;
+    }
+
+    private static RestEndpoint endpoint(IndexedClass indexedClass, RestMethodEnum method, String methodName,
+                                         String classUrl, String methodUrl) {
+        RestEndpoint endpoint = new RestEndpoint();
+        endpoint.setClassName(indexedClass.getClassName());
+        endpoint.setSimpleClassName(indexedClass.getSimpleClassName());
+        endpoint.setRestMethodEnum(method);
+        endpoint.setMethodName(methodName);
+        endpoint.setClassUrl(classUrl);
+        endpoint.setMethodUrl(methodUrl);
+        return endpoint;
+    }
+
+}